@@ -0,0 +1,30 @@
+import bench.Bench;
+import client.BoardPanelBench;
+import client.ChatSearchBench;
+import client.StateParseBench;
+import model.GameStateBench;
+import model.MessageBench;
+import model.ReplayBench;
+import server.ChatBusBench;
+import server.ChatFilterBench;
+import server.GameManagerBench;
+
+/**
+ * Runs the benchmark suite. An optional regex argument selects benchmarks by name,
+ * e.g. "java BenchMain GameState".
+ */
+public class BenchMain {
+    public static void main(String[] args) throws Exception {
+        Bench bench = new Bench(args.length > 0 ? args[0] : null);
+        Bench.header();
+        GameStateBench.register(bench);
+        GameManagerBench.register(bench);
+        MessageBench.register(bench);
+        ReplayBench.register(bench);
+        StateParseBench.register(bench);
+        BoardPanelBench.register(bench);
+        ChatSearchBench.register(bench);
+        ChatFilterBench.register(bench);
+        ChatBusBench.register(bench);
+    }
+}
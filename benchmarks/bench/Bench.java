@@ -0,0 +1,108 @@
+package bench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal JMH-style benchmark harness that needs nothing beyond the JDK, so it
+ * builds with the same plain javac setup as the game.
+ *
+ * Each benchmark runs warmup iterations, then measurement iterations, and reports
+ * average time per operation plus allocation per operation and GC count measured
+ * through the HotSpot thread allocation counters (the equivalent of JMH's
+ * "-prof gc" gc.alloc.rate.norm / gc.count columns).
+ */
+public class Bench {
+    /** One benchmark operation; the return value is consumed so it cannot be optimised away. */
+    public interface Op {
+        Object run() throws Exception;
+    }
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURE_ITERATIONS = 5;
+    private static final long WARMUP_NANOS = 200_000_000L;
+    private static final long MEASURE_NANOS = 500_000_000L;
+
+    // Results are compared against this, as JMH's Blackhole does: one volatile read per op.
+    // The store that would follow a match keeps the JIT from dropping the op or eliding
+    // its allocations, without making results escape on the path actually taken
+    private static volatile Object sink = new Object();
+
+    private final Pattern filter;
+    private final List<String> results = new ArrayList<>();
+
+    public Bench(String filter) {
+        this.filter = Pattern.compile(filter == null ? ".*" : filter);
+    }
+
+    public void run(String name, Op op) throws Exception {
+        if (!filter.matcher(name).find()) return;
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iteration(op, WARMUP_NANOS);
+        }
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        double[] nanosPerOp = new double[MEASURE_ITERATIONS];
+        long totalOps = 0;
+        long allocBefore = threads.getThreadAllocatedBytes(thread);
+        long gcBefore = gcCount();
+        for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+            long[] r = iteration(op, MEASURE_NANOS);
+            nanosPerOp[i] = (double) r[1] / r[0];
+            totalOps += r[0];
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocBefore;
+        long gcs = gcCount() - gcBefore;
+
+        double mean = 0;
+        for (double v : nanosPerOp) mean += v;
+        mean /= nanosPerOp.length;
+        double var = 0;
+        for (double v : nanosPerOp) var += (v - mean) * (v - mean);
+        double error = Math.sqrt(var / (nanosPerOp.length - 1));
+
+        String line = String.format("%-44s %12.1f +- %7.1f ns/op %12.1f B/op %6d gc",
+                name, mean, error, (double) allocated / totalOps, gcs);
+        results.add(line);
+        System.out.println(line);
+    }
+
+    /** Runs the op in batches until the time budget is used; returns {ops, nanos}. */
+    private static long[] iteration(Op op, long budgetNanos) throws Exception {
+        long ops = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < 256; i++) {
+                Object result = op.run();
+                if (result == sink) sink = result; // Never true
+            }
+            ops += 256;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < budgetNanos);
+        return new long[]{ops, elapsed};
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    public List<String> getResults() {
+        return results;
+    }
+
+    public static void header() {
+        System.out.println(String.format("%-44s %25s %17s %9s", "Benchmark", "Score", "Alloc", "GCs"));
+    }
+}
@@ -0,0 +1,40 @@
+package client;
+
+import bench.Bench;
+import model.Message;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+
+/** Board painting into an offscreen image: a full repaint, and the one-cell repaint a token move asks for. */
+public class BoardPanelBench {
+    public static void register(Bench bench) throws Exception {
+        ClientGameModel model = new ClientGameModel();
+        BoardPanel panel = new BoardPanel(model);
+        panel.setSize(panel.getPreferredSize());
+        // Applied on the EDT, as the model expects
+        SwingUtilities.invokeAndWait(() -> {
+            model.setNames(Map.of(1, "ann", 2, "bob", 3, "cy", 4, "dee"));
+            model.applyState(new Message(Message.STATE, "1=-1:0,2=14:1,3=30:2,4=55:3,", 1));
+        });
+
+        BufferedImage canvas = new BufferedImage(panel.getWidth(), panel.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        bench.run("BoardPanel.paint.full", () -> paint(panel, canvas, null));
+        // Cell of the token at position 14, where a move's repaint would be clipped to
+        Rectangle cell = new Rectangle((panel.getWidth() - 540) / 2 + 8 * 36, (panel.getHeight() - 540) / 2 + 36, 36, 36);
+        bench.run("BoardPanel.paint.tokenCell", () -> paint(panel, canvas, cell));
+    }
+
+    private static Object paint(BoardPanel panel, BufferedImage canvas, Rectangle clip) {
+        Graphics2D g = canvas.createGraphics();
+        try {
+            if (clip != null) g.setClip(clip);
+            panel.paintComponent(g);
+        } finally {
+            g.dispose();
+        }
+        return canvas;
+    }
+}
@@ -0,0 +1,73 @@
+package client;
+
+import bench.Bench;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Chat search over a large history spread across conversations: prefix,
+ * two-term and rare-word lookups in the index against scanning the messages
+ * newest first, plus the cost of indexing one new message. A scan for common
+ * words stops after a page of hits; a selective query has to read everything.
+ */
+public class ChatSearchBench {
+    private static final int MESSAGES = 100_000;
+    private static final int CHATS = 8;
+    private static final String[] WORDS = {
+        "roll", "six", "again", "capture", "home", "nice", "move", "wait", "turn", "lucky",
+        "token", "safe", "yard", "hello", "good", "game", "rematch", "later", "close", "win"
+    };
+
+    public static void register(Bench bench) throws Exception {
+        Random random = new Random(42);
+        ChatSearchIndex index = new ChatSearchIndex();
+        ChatPanel.ChatMessage[] all = new ChatPanel.ChatMessage[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            all[i] = message(random, i);
+            index.add(i % CHATS, all[i]);
+        }
+
+        bench.run("ChatSearchIndex.search.prefix", () -> index.search("capt", 50));
+        bench.run("ChatSearchIndex.search.twoTerms", () -> index.search("lucky rem", 50));
+        bench.run("ChatSearch.scan.twoTerms", () -> scan(all, "lucky", "rem", 50));
+        bench.run("ChatSearchIndex.search.rare", () -> index.search("home417 win", 50));
+        bench.run("ChatSearch.scan.rare", () -> scan(all, "home417", "win", 50));
+        int[] next = {MESSAGES};
+        bench.run("ChatSearchIndex.add", () -> {
+            ChatPanel.ChatMessage msg = message(random, next[0]++);
+            index.add(0, msg);
+            index.remove(msg); // Keeps the index at its starting size
+            return msg;
+        });
+    }
+
+    private static ChatPanel.ChatMessage message(Random random, int n) {
+        StringBuilder text = new StringBuilder();
+        int words = 3 + random.nextInt(8);
+        for (int w = 0; w < words; w++) {
+            if (w > 0) text.append(' ');
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+            if (random.nextInt(4) == 0) text.append(random.nextInt(1000)); // Some rare words
+        }
+        return new ChatPanel.ChatMessage("Player" + (n % 40), text.toString(), n, false, n);
+    }
+
+    // What a search without an index does: lower-case and test every message
+    private static int scan(ChatPanel.ChatMessage[] all, String a, String b, int limit) {
+        int found = 0;
+        for (int i = all.length - 1; i >= 0 && found < limit; i--) {
+            String text = (all[i].sender + " " + all[i].content).toLowerCase(Locale.ROOT);
+            if (hasWordStarting(text, a) && hasWordStarting(text, b)) found++;
+        }
+        return found;
+    }
+
+    private static boolean hasWordStarting(String text, String prefix) {
+        for (int at = text.indexOf(prefix); at >= 0; at = text.indexOf(prefix, at + 1)) {
+            if (at == 0 || !Character.isLetterOrDigit(text.charAt(at - 1))) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,13 @@
+package client;
+
+import bench.Bench;
+import model.Message;
+
+/** Client-side STATE decoding, as done for every board update. */
+public class StateParseBench {
+    public static void register(Bench bench) throws Exception {
+        ClientGameModel model = new ClientGameModel();
+        Message frame = new Message(Message.STATE, "1=-1:0,2=14:1,3=30:2,4=55:3,", 1);
+        bench.run("ClientGameModel.applyState", () -> model.applyState(frame));
+    }
+}
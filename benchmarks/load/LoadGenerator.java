@@ -0,0 +1,218 @@
+package load;
+
+import model.Message;
+import server.LatencyHistogram;
+import util.Constants;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless load generator: opens many concurrent sessions against a running
+ * LudoServer, each of which JOINs, answers YOUR_TURN with ROLL and sends public
+ * chat (preceded by a TYPING update, like a real client) at a configured rate. End-to-end latency is measured from writing ROLL to
+ * receiving the next STATE, and throughput plus tail latency are printed every
+ * report interval and once more at the end.
+ *
+ * Start the server with the room size as its argument (e.g. "LudoServer 4") so
+ * it keeps opening rooms instead of prompting for one game.
+ *
+ * Options: --host, --port, --sessions N, --duration SECONDS,
+ *          --chat-per-minute N (per session, 0 disables chat), --ramp SESSIONS_PER_SECOND
+ */
+public class LoadGenerator {
+    private static final long REPORT_INTERVAL_SECONDS = 5;
+    private static final int RESET_EVERY = 256; // Bound the stream handle table like a long-lived client
+
+    private final String host;
+    private final int port;
+    private final int sessions;
+    private final int durationSeconds;
+    private final int chatPerMinute;
+    private final int rampPerSecond;
+
+    private final LatencyHistogram rollToState = new LatencyHistogram();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder rolls = new LongAdder();
+    private final LongAdder chats = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicInteger connected = new AtomicInteger();
+    private final List<Session> open = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService timers = Executors.newScheduledThreadPool(2, r -> {
+        Thread t = new Thread(r, "load-timer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final long startedAt = System.nanoTime();
+    private volatile boolean running = true;
+
+    LoadGenerator(Map<String, String> options) {
+        host = options.getOrDefault("host", Constants.HOST);
+        port = Integer.parseInt(options.getOrDefault("port", String.valueOf(Constants.SERVER_PORT)));
+        sessions = Integer.parseInt(options.getOrDefault("sessions", "100"));
+        durationSeconds = Integer.parseInt(options.getOrDefault("duration", "60"));
+        chatPerMinute = Integer.parseInt(options.getOrDefault("chat-per-minute", "6"));
+        rampPerSecond = Math.max(1, Integer.parseInt(options.getOrDefault("ramp", "200")));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                System.err.println("Unexpected argument: " + args[i]);
+                return;
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        new LoadGenerator(options).run();
+    }
+
+    void run() throws InterruptedException {
+        System.out.println("Load: " + sessions + " session(s) against " + host + ":" + port
+                + " for " + durationSeconds + "s, " + chatPerMinute + " chat/min each");
+        long start = startedAt;
+        long[] last = {start, 0, 0};
+        timers.scheduleAtFixedRate(() -> report(last), REPORT_INTERVAL_SECONDS,
+                REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+        // Ramp up so the accept backlog is not the thing being measured
+        long pauseNanos = 1_000_000_000L / rampPerSecond;
+        for (int i = 0; i < sessions && running; i++) {
+            Session s = new Session(i);
+            open.add(s);
+            new Thread(s, "load-session-" + i).start();
+            if (pauseNanos > 0) TimeUnit.NANOSECONDS.sleep(pauseNanos);
+        }
+
+        long remaining = TimeUnit.SECONDS.toNanos(durationSeconds) - (System.nanoTime() - start);
+        if (remaining > 0) TimeUnit.NANOSECONDS.sleep(remaining);
+        running = false;
+        timers.shutdownNow();
+        for (Session s : open) s.close();
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println("=== Summary ===");
+        System.out.printf("sessions connected  %d / %d, errors %d%n", connected.get(), sessions, errors.sum());
+        System.out.printf("messages sent       %d (%.1f/s)%n", sent.sum(), sent.sum() / seconds);
+        System.out.printf("messages received   %d (%.1f/s)%n", received.sum(), received.sum() / seconds);
+        System.out.printf("rolls / chats       %d / %d%n", rolls.sum(), chats.sum());
+        System.out.println("ROLL->STATE latency " + latencySummary());
+    }
+
+    private void report(long[] last) {
+        long now = System.nanoTime();
+        long in = received.sum();
+        long out = sent.sum();
+        double seconds = (now - last[0]) / 1e9;
+        System.out.printf("[%3ds] sessions %d  in %.0f/s  out %.0f/s  %s%n",
+                Math.round((now - startedAt) / 1e9),
+                connected.get(), (in - last[1]) / seconds, (out - last[2]) / seconds, latencySummary());
+        last[0] = now;
+        last[1] = in;
+        last[2] = out;
+    }
+
+    private String latencySummary() {
+        return String.format("n=%d p50=%.2fms p99=%.2fms p999=%.2fms",
+                rollToState.getCount(),
+                rollToState.percentile(0.5) / 1e6,
+                rollToState.percentile(0.99) / 1e6,
+                rollToState.percentile(0.999) / 1e6);
+    }
+
+    /** One simulated client: a socket, its reader loop, and an optional chat timer. */
+    private class Session implements Runnable {
+        private final int index;
+        private Socket socket;
+        private ObjectOutputStream out;
+        private volatile int playerId;
+        private int writes;
+        private volatile long rollSentAt;
+        private ScheduledFuture<?> chatTask;
+
+        Session(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+            try {
+                socket = new Socket(host, port);
+                socket.setTcpNoDelay(true);
+                out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                out.flush();
+                ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(socket.getInputStream()));
+                send(new Message(Message.JOIN, "", "load-" + index));
+                connected.incrementAndGet();
+
+                if (chatPerMinute > 0) {
+                    long periodMillis = 60_000L / chatPerMinute;
+                    long offset = ThreadLocalRandom.current().nextLong(periodMillis);
+                    chatTask = timers.scheduleAtFixedRate(this::chat, offset, periodMillis, TimeUnit.MILLISECONDS);
+                }
+
+                while (running) {
+                    Message msg = (Message) in.readObject();
+                    received.increment();
+                    switch (msg.getType()) {
+                        case Message.WELCOME:
+                            playerId = msg.getPlayerId();
+                            break;
+                        case Message.YOUR_TURN:
+                            rollSentAt = System.nanoTime();
+                            send(new Message(Message.ROLL, "", playerId));
+                            rolls.increment();
+                            break;
+                        case Message.STATE:
+                            long sentAt = rollSentAt;
+                            if (sentAt != 0) {
+                                rollSentAt = 0;
+                                rollToState.record(System.nanoTime() - sentAt);
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            } catch (IOException | ClassNotFoundException e) {
+                if (running) {
+                    errors.increment();
+                    System.err.println("session " + index + ": " + e);
+                }
+            } finally {
+                close();
+            }
+        }
+
+        private void chat() {
+            try {
+                send(new Message(Message.TYPING, "", playerId, 0));
+                send(new Message(Message.PUBLIC_CHAT, "load test message " + index, playerId));
+                chats.increment();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void send(Message msg) throws IOException {
+            synchronized (this) {
+                out.writeObject(msg);
+                if (++writes % RESET_EVERY == 0) out.reset();
+                out.flush();
+            }
+            sent.increment();
+        }
+
+        void close() {
+            if (chatTask != null) chatTask.cancel(false);
+            try {
+                if (socket != null) socket.close();
+            } catch (IOException ignored) {}
+        }
+    }
+}
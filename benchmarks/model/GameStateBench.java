@@ -0,0 +1,56 @@
+package model;
+
+import bench.Bench;
+
+/**
+ * Engine benchmarks. Each op first puts the tokens back where the scenario needs
+ * them, so every measurement exercises the same path regardless of history.
+ */
+public class GameStateBench {
+    private static final int[] IDS = {1, 2, 3, 4};
+
+    public static void register(Bench bench) throws Exception {
+        bench.run("GameState.movePlayer", movePlayer());
+        bench.run("GameState.checkCapture", checkCapture());
+        bench.run("GameState.nextTurn", nextTurn());
+    }
+
+    static GameState newGame() {
+        GameState state = new GameState();
+        for (int id : IDS) {
+            state.addPlayer(new Player(id, "Player-" + id));
+        }
+        return state;
+    }
+
+    private static Bench.Op movePlayer() {
+        GameState state = newGame();
+        int[] counter = {0};
+        return () -> {
+            int n = counter[0]++;
+            int id = state.getCurrentTurn();
+            Player p = state.getPlayers().get(id);
+            // Mid-board, clear of the home stretch, so every roll is a normal move
+            p.setPosition(p.getColor() * 13 + 2);
+            p.setFinished(false);
+            return state.movePlayer(id, 1 + n % 6);
+        };
+    }
+
+    private static Bench.Op checkCapture() {
+        GameState state = newGame();
+        Player victim = state.getPlayers().get(IDS[1]);
+        return () -> {
+            victim.setPosition(10); // Position 10 is not a safe square
+            return state.checkCapture(10, IDS[0]);
+        };
+    }
+
+    private static Bench.Op nextTurn() {
+        GameState state = newGame();
+        return () -> {
+            state.nextTurn();
+            return null;
+        };
+    }
+}
@@ -0,0 +1,107 @@
+package model;
+
+import bench.Bench;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Protocol benchmarks: a Message written through ObjectOutputStream and read
+ * back, with fresh streams per op as a new connection would see, and the
+ * steady state of a long-lived connection (one stream, reset every 256
+ * messages like ClientHandler), which is where per-move garbage comes from.
+ */
+public class MessageBench {
+    private static final int RESET_EVERY = 256;
+
+    public static void register(Bench bench) throws Exception {
+        bench.run("Message.roundTrip.state", roundTrip(new Message(Message.STATE, "1=-1,2=14,3=30,4=55,", "SERVER")));
+        bench.run("Message.roundTrip.publicChat", roundTrip(new Message(Message.PUBLIC_CHAT, "good luck everyone!", 7)));
+        bench.run("Message.stream.write.stateFrame", writeStateFrames());
+        bench.run("Message.stream.read.roll", readRolls());
+    }
+
+    private static Bench.Op roundTrip(Message msg) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        return () -> {
+            bytes.reset();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(msg);
+            out.flush();
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+            return in.readObject();
+        };
+    }
+
+    // What the server pays per move and client: build the STATE frame and write it
+    private static Bench.Op writeStateFrames() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        int[] writes = {0};
+        return () -> {
+            Message frame = new Message(Message.STATE, "1=-1:0,2=14:1,3=30:2,4=55:3,", 3);
+            frame.setStateHash(0x5DEECE66DL);
+            frame.setSequence(writes[0]);
+            out.writeObject(frame);
+            if (++writes[0] % RESET_EVERY == 0) {
+                out.reset();
+                out.flush();
+                bytes.reset();
+            }
+            return frame;
+        };
+    }
+
+    // Decoding an inbound ROLL on a live connection; the input replays one reset cycle forever
+    private static Bench.Op readRolls() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.flush();
+        int header = bytes.size();
+        for (int i = 0; i < RESET_EVERY; i++) {
+            out.writeObject(new Message(Message.ROLL, "", 7));
+        }
+        out.reset();
+        out.flush();
+        byte[] all = bytes.toByteArray();
+        ObjectInputStream in = new ObjectInputStream(new CycleInputStream(
+                Arrays.copyOf(all, header), Arrays.copyOfRange(all, header, all.length)));
+        return in::readObject;
+    }
+
+    /** Serves a header once, then the body over and over. */
+    private static final class CycleInputStream extends InputStream {
+        private final byte[] header;
+        private final byte[] body;
+        private byte[] current;
+        private int pos;
+
+        CycleInputStream(byte[] header, byte[] body) {
+            this.header = header;
+            this.body = body;
+            this.current = header;
+        }
+
+        @Override
+        public int read() {
+            if (pos == current.length) {
+                current = body;
+                pos = 0;
+            }
+            return current[pos++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (pos == current.length) {
+                current = body;
+                pos = 0;
+            }
+            int n = Math.min(len, current.length - pos);
+            System.arraycopy(current, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package model;
+
+import bench.Bench;
+
+import java.util.Random;
+
+/**
+ * Replay seeking on one long recorded game: from the nearest keyframe, as the
+ * viewer does, against re-simulating every move from the start.
+ */
+public class ReplayBench {
+    private static final int EVENTS = 5000;
+
+    public static void register(Bench bench) throws Exception {
+        Replay replay = record(new Random(42));
+        Random targets = new Random(7);
+        bench.run("Replay.stateAt.keyframe", () -> replay.stateAt(targets.nextInt(replay.size() + 1)));
+        bench.run("Replay.stateAt.fromStart", () -> {
+            int target = targets.nextInt(replay.size() + 1);
+            GameState state = replay.stateAt(0);
+            for (int i = 0; i < target; i++) replay.apply(state, i);
+            return state;
+        });
+    }
+
+    // Four players, recorded as the server would; the rolls go on past the finish
+    // so the recording is as long as a slow game with many captures
+    private static Replay record(Random dice) {
+        GameState game = GameStateBench.newGame();
+        int n = game.getPlayers().size();
+        int[] ids = new int[n];
+        String[] names = new String[n];
+        int[] colors = new int[n];
+        int i = 0;
+        for (Player p : game.getPlayers().values()) {
+            ids[i] = p.getId();
+            names[i] = p.getName();
+            colors[i] = p.getColor();
+            i++;
+        }
+        Replay replay = new Replay(ids, names, colors, game.getCurrentTurn());
+        for (int e = 0; e < EVENTS; e++) {
+            int mover = game.getCurrentTurn();
+            int roll = 1 + dice.nextInt(6);
+            game.movePlayer(mover, roll);
+            replay.append(mover, roll);
+        }
+        return replay;
+    }
+}
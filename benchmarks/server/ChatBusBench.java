@@ -0,0 +1,37 @@
+package server;
+
+import bench.Bench;
+import model.Message;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/** Chat bus fan-out: the cost a dispatcher pays per message on a very large channel. */
+public class ChatBusBench {
+    private static final int SUBSCRIBERS = 50_000;
+
+    public static void register(Bench bench) throws Exception {
+        ChatBus bus = new ChatBus(1);
+        long[] delivered = {0};
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            bus.subscribe(new ChatBus.Subscriber() {
+                private final Set<String> subscriptions = new HashSet<>();
+
+                @Override
+                public void deliver(Message msg) {
+                    delivered[0]++;
+                }
+
+                @Override
+                public Set<String> subscriptions() {
+                    return subscriptions;
+                }
+            }, ChatBus.LOBBY);
+        }
+        Message msg = new Message(Message.LOBBY_CHAT, "hello lobby", 1);
+        bench.run("ChatBus.fanOut.50k", () -> {
+            bus.fanOut(ChatBus.LOBBY, msg);
+            return delivered[0];
+        });
+    }
+}
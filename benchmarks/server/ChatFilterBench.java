@@ -0,0 +1,31 @@
+package server;
+
+import bench.Bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Moderation cost per chat message against a large banned-phrase list. */
+public class ChatFilterBench {
+    private static final int PHRASES = 20_000;
+
+    public static void register(Bench bench) throws Exception {
+        ChatFilter.Automaton automaton = ChatFilter.Automaton.build(phrases());
+        bench.run("ChatFilter.mask.clean", () -> automaton.mask("good luck everyone, see you at the finish line!"));
+        bench.run("ChatFilter.mask.hit", () -> automaton.mask("well that was a qzxvb move, honestly"));
+    }
+
+    // Deterministic pseudo-words plus one phrase the "hit" message contains
+    private static List<String> phrases() {
+        Random random = new Random(42);
+        List<String> phrases = new ArrayList<>(PHRASES);
+        phrases.add("qzxvb");
+        while (phrases.size() < PHRASES) {
+            char[] word = new char[4 + random.nextInt(8)];
+            for (int i = 0; i < word.length; i++) word[i] = (char) ('a' + random.nextInt(26));
+            phrases.add(new String(word));
+        }
+        return phrases;
+    }
+}
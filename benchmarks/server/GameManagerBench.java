@@ -0,0 +1,25 @@
+package server;
+
+import bench.Bench;
+
+import java.nio.file.Files;
+
+/** Broadcast-side benchmarks for GameManager. */
+public class GameManagerBench {
+    public static void register(Bench bench) throws Exception {
+        bench.run("GameManager.updateAll.encodeState", encodeState());
+    }
+
+    private static Bench.Op encodeState() throws Exception {
+        GameManager gm = new GameManager("bench",
+                new RatingStore(Files.createTempFile("bench-ratings", ".log")),
+                new ChatHistoryStore(Files.createTempDirectory("bench-chat")),
+                new ChatFilter(Files.createTempFile("bench-banned", ".txt")),
+                new ChatBus(1));
+        for (int i = 1; i <= 4; i++) {
+            gm.addBot(new BotPlayer(GameManager.nextPlayerId(), "BOT-" + i, gm));
+        }
+        // updateAll builds the payload once and converts it to a String per client
+        return () -> gm.encodeState().toString();
+    }
+}
@@ -0,0 +1,28 @@
+@echo off
+echo ==========================================
+echo   Compiling Ludo Master Benchmarks
+echo ==========================================
+echo.
+
+REM Clean and create bench-bin directory
+if exist bench-bin rmdir /s /q bench-bin
+mkdir bench-bin
+
+REM Benchmarks share packages with the game, so compile both trees together
+javac -encoding UTF-8 -d bench-bin -sourcepath src;benchmarks benchmarks\BenchMain.java benchmarks\load\LoadGenerator.java
+
+if %errorlevel% equ 0 (
+    echo.
+    echo ==========================================
+    echo   Compilation Successful!
+    echo ==========================================
+    echo.
+) else (
+    echo.
+    echo ==========================================
+    echo   Compilation Failed!
+    echo ==========================================
+    echo.
+)
+
+pause
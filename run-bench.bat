@@ -0,0 +1,12 @@
+@echo off
+title Ludo Master - Benchmarks
+echo.
+echo ========================================
+echo   LUDO MASTER - Benchmarks
+echo ========================================
+echo.
+
+REM Optional first argument: regex selecting benchmarks by name
+java -Dludo.log.level=WARN -cp bench-bin BenchMain %1
+
+pause
@@ -0,0 +1,13 @@
+@echo off
+title Ludo Master - Load Generator
+echo.
+echo ========================================
+echo   LUDO MASTER - Load Generator
+echo ========================================
+echo.
+
+REM Start the server first with a room size, e.g. "java -cp bin server.LudoServer 4"
+REM Options: --sessions N --duration SECONDS --chat-per-minute N --ramp SESSIONS_PER_SECOND
+java -cp bench-bin load.LoadGenerator %*
+
+pause
@@ -1,12 +1,14 @@
 import java.util.Scanner;
 import server.LudoServer;
 import client.LudoClient;
+import client.ReplayViewer;
 
 public class Main {
     public static void main(String[] args) {
         System.out.println("=== Ludo Network Game ===");
         System.out.println("1. Start Server");
         System.out.println("2. Start Client");
+        System.out.println("3. Watch a Replay");
         System.out.print("Enter choice: ");
          
         @SuppressWarnings("resource")
@@ -20,6 +22,9 @@ public class Main {
             } else if (choice == 2) {
                 // Run client
                 LudoClient.main(new String[]{});
+            } else if (choice == 3) {
+                // Pick a recorded game from the replays folder
+                ReplayViewer.main(new String[]{});
             } else {
                 System.out.println("Invalid choice!");
             }
@@ -2,11 +2,47 @@ package client;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.Map;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
 
-public class BoardPanel extends JPanel {
-    private Map<String, Integer> positions;
-    private int[] colors;
+/**
+ * The game board. Everything but the tokens never changes, so it is rendered
+ * once into an image at the screen's scale and blitted on each paint; the image
+ * is only redrawn when the scale (DPI) changes. The panel listens to a
+ * ClientGameModel and keeps what it shows in per-seat arrays (a seat is a
+ * colour); an update repaints just the seats that changed, and paintComponent
+ * skips tokens outside the clip.
+ *
+ * A moved token walks square by square to its new position. One Swing timer
+ * drives every walk and only repaints the area each token swept; it stops
+ * when nothing is moving. Moves that arrive mid-walk are queued behind it,
+ * a long queue plays faster, and one longer than MAX_QUEUED_STEPS (or an EDT
+ * stall longer than the frame budget) makes tokens jump to where they belong.
+ */
+public class BoardPanel extends JPanel implements ClientGameModel.Listener {
+    private static final int SEATS = ClientGameModel.SEATS;
+    
+    // EDT only: what each seat's token shows, and the tokens still walking there
+    private final int[] shownIds = new int[SEATS]; // 0 = no token
+    private final int[] shownPositions = new int[SEATS];
+    private final String[] shownInitials = new String[SEATS];
+    private final Motion[] motions = new Motion[SEATS];
+    private final Timer animator = new Timer(FRAME_MS, e -> tick());
+    private long lastTick;
+    private BufferedImage boardLayer; // EDT only
+    private double boardLayerScale;
+    private LongConsumer paintObserver; // Told how long each paint took, if set
+    
+    private static final int FRAME_MS = 16;                          // ~60 fps while anything moves
+    private static final long STEP_NANOS = 90_000_000L;              // One square at normal speed
+    private static final int NORMAL_BACKLOG = 6;                     // Squares queued before walks speed up
+    private static final int MAX_QUEUED_STEPS = 24;                  // Beyond this a token jumps ahead
+    private static final long FRAME_BUDGET_NANOS = 4 * FRAME_MS * 1_000_000L; // Longer stalls end every walk
+    private static final int MAX_WALK = 6;                           // Squares one roll can move
     
     private static final Color RED = new Color(239, 68, 68);
     private static final Color GREEN = new Color(34, 197, 94);
@@ -21,16 +57,66 @@ public class BoardPanel extends JPanel {
     private static final Color PATH_COLOR = new Color(255, 255, 255);
     private static final Color BORDER_COLOR = new Color(0, 0, 0);
     private static final Color STAR_COLOR = new Color(255, 215, 0);
+    private static final Color[] PLAYER_COLORS = {RED, GREEN, YELLOW, BLUE};
+    private static final Color[] PLAYER_DARK = {RED.darker(), GREEN.darker(), YELLOW.darker(), BLUE.darker()};
+    private static final Color BOARD_SHADOW = new Color(0, 0, 0, 40);
+    private static final Color HOME_CIRCLE = new Color(255, 255, 255, 200);
+    private static final Color TOKEN_SHADOW = new Color(0, 0, 0, 80);
+    private static final Color TOKEN_SHINE = new Color(255, 255, 255, 150);
+
+    private static final BasicStroke THIN = new BasicStroke(1);
+    private static final BasicStroke MEDIUM = new BasicStroke(2);
+    private static final BasicStroke TOKEN_RIM = new BasicStroke(2.5f);
+    private static final BasicStroke THICK = new BasicStroke(3);
+    private static final Font START_FONT = Theme.font(Font.BOLD, 8);
+    private static final Font TOKEN_FONT = Theme.font(Font.BOLD, 12);
     
     private static final int GRID_SIZE = 15;
     private static final int CELL_SIZE = 36;
+    private static final int BOARD_SIZE = GRID_SIZE * CELL_SIZE;
+    private static final int LAYER_MARGIN = 2; // Room for the outer stroke, plus 3px for the drop shadow
+    private static final int LAYER_SIZE = BOARD_SIZE + 2 * LAYER_MARGIN + 3;
+
+    /** A token's walk: the cell it left, the cells still ahead, and where it is drawn now (grid units). */
+    private static final class Motion {
+        final ArrayDeque<Point> ahead = new ArrayDeque<>();
+        Point from;
+        long stepStart;
+        double x;
+        double y;
+
+        Motion(Point from, long now) {
+            this.from = from;
+            this.stepStart = now;
+            this.x = from.x;
+            this.y = from.y;
+        }
+    }
+    
+    private static final int[] HOME_TURN_OFF = {51, 12, 25, 38}; // Per colour, as in GameState
+    private static final Point[] YARD_CELLS = {new Point(3, 3), new Point(12, 3), new Point(12, 12), new Point(3, 12)};
+    private static final Point[][] HOME_COLUMNS = new Point[SEATS][6]; // Squares 52 onwards, per colour
+    
+    static {
+        for (int i = 0; i < 6; i++) {
+            HOME_COLUMNS[0][i] = new Point(1 + i, 7);  // Red
+            HOME_COLUMNS[1][i] = new Point(7, 1 + i);  // Green
+            HOME_COLUMNS[2][i] = new Point(7, 13 - i); // Yellow
+            HOME_COLUMNS[3][i] = new Point(13 - i, 7); // Blue
+        }
+    }
     
     private Point[] pathCoordinates = new Point[52];
     
-    public BoardPanel() {
+    public BoardPanel(ClientGameModel model) {
         setBackground(new Color(240, 240, 245));
         setPreferredSize(new Dimension(GRID_SIZE * CELL_SIZE + 40, GRID_SIZE * CELL_SIZE + 40));
         initializePathCoordinates();
+        model.addListener(this);
+    }
+    
+    void setPaintObserver(LongConsumer paintObserver) {
+        this.paintObserver = paintObserver;
     }
     
     private void initializePathCoordinates() {
@@ -109,25 +195,190 @@ public class BoardPanel extends JPanel {
         pathCoordinates[idx++] = new Point(1, 9);  // Position 51
     }
     
-    public void updatePositions(Map<String, Integer> pos, int[] playerColors) {
-        this.positions = pos;
-        this.colors = playerColors;
-        repaint();
+    /** Repaints only the seats whose tokens changed; moves along the track are walked. */
+    @Override
+    public void seatsChanged(ClientGameModel model, int changed) {
+        long now = System.nanoTime();
+        for (int s = 0; s < SEATS; s++) {
+            if ((changed & (1 << s)) == 0) continue;
+            int id = model.idAt(s);
+            int pos = model.positionAt(s);
+            int oldId = shownIds[s];
+            int oldPos = shownPositions[s];
+            if (id != 0 && id == oldId && pos != oldPos) {
+                walk(s, oldPos, pos, now);
+            } else {
+                if (oldId != 0) repaintToken(s, tokenCell(oldPos, s));
+                if (id != oldId) motions[s] = null;
+                if (id != 0) repaintToken(s, tokenCell(pos, s));
+            }
+            shownIds[s] = id;
+            shownPositions[s] = pos;
+            shownInitials[s] = model.initialAt(s);
+        }
+    }
+    
+    // Queues the squares between two positions behind whatever the token is already walking
+    private void walk(int seat, int from, int to, long now) {
+        Motion m = motions[seat];
+        if (m == null) {
+            m = new Motion(tokenCell(from, seat), now);
+            motions[seat] = m;
+        }
+        m.ahead.addAll(route(from, to, seat));
+        if (m.ahead.size() > MAX_QUEUED_STEPS) {
+            Point last = m.ahead.peekLast();
+            m.ahead.clear();
+            m.ahead.add(last);
+            m.stepStart = now;
+        }
+        if (!animator.isRunning()) {
+            lastTick = now;
+            animator.start();
+        }
+    }
+    
+    // Squares a token passes through, in order; leaving or returning to the yard is a single hop
+    private List<Point> route(int from, int to, int color) {
+        List<Point> cells = new ArrayList<>(MAX_WALK);
+        if (from >= 0 && to >= 0) {
+            int p = from;
+            while (p != to && cells.size() < MAX_WALK) {
+                p = nextSquare(p, color);
+                cells.add(tokenCell(p, color));
+            }
+            if (p == to) return cells;
+            cells.clear(); // Not a forward walk of one roll; don't guess
+        }
+        cells.add(tokenCell(to, color));
+        return cells;
+    }
+    
+    // Mirrors GameState.movePlayer: reaching a colour's turn-off square leads into its home column
+    private static int nextSquare(int pos, int color) {
+        if (pos >= 52) return pos + 1;
+        int next = (pos + 1) % 52;
+        return next == HOME_TURN_OFF[color] ? 52 : next;
+    }
+    
+    private void tick() {
+        long now = System.nanoTime();
+        boolean stalled = now - lastTick > FRAME_BUDGET_NANOS;
+        lastTick = now;
+        boolean moving = false;
+        for (int s = 0; s < SEATS; s++) {
+            Motion m = motions[s];
+            if (m == null) continue;
+            double beforeX = m.x, beforeY = m.y;
+            advance(m, now, stalled);
+            repaintSwept(beforeX, beforeY, m.x, m.y);
+            if (m.ahead.isEmpty()) {
+                motions[s] = null;
+            } else {
+                moving = true;
+            }
+        }
+        if (!moving) animator.stop(); // Idle until the next move
+    }
+    
+    private static void advance(Motion m, long now, boolean stalled) {
+        if (stalled && !m.ahead.isEmpty()) {
+            m.from = m.ahead.peekLast();
+            m.ahead.clear();
+        }
+        // A backlog plays faster so the board never trails the game for long
+        long stepNanos = STEP_NANOS * NORMAL_BACKLOG / Math.max(NORMAL_BACKLOG, m.ahead.size());
+        while (!m.ahead.isEmpty() && now - m.stepStart >= stepNanos) {
+            m.from = m.ahead.poll();
+            m.stepStart += stepNanos;
+        }
+        Point next = m.ahead.peek();
+        if (next == null) {
+            m.x = m.from.x;
+            m.y = m.from.y;
+            return;
+        }
+        double t = (double) (now - m.stepStart) / stepNanos;
+        m.x = m.from.x + (next.x - m.from.x) * t;
+        m.y = m.from.y + (next.y - m.from.y) * t;
+    }
+    
+    private void repaintSwept(double x1, double y1, double x2, double y2) {
+        int left = (int) Math.floor(Math.min(x1, x2) * CELL_SIZE);
+        int top = (int) Math.floor(Math.min(y1, y2) * CELL_SIZE);
+        int right = (int) Math.ceil(Math.max(x1, x2) * CELL_SIZE) + CELL_SIZE;
+        int bottom = (int) Math.ceil(Math.max(y1, y2) * CELL_SIZE) + CELL_SIZE;
+        repaint(boardX() + left, boardY() + top, right - left, bottom - top);
+    }
+    
+    private void repaintToken(int seat, Point cell) {
+        Motion m = motions[seat];
+        if (m != null) repaintSwept(m.x, m.y, m.x, m.y);
+        repaint(boardX() + cell.x * CELL_SIZE, boardY() + cell.y * CELL_SIZE, CELL_SIZE, CELL_SIZE);
+    }
+    
+    private int boardX() {
+        return (getWidth() - BOARD_SIZE) / 2;
+    }
+    
+    private int boardY() {
+        return (getHeight() - BOARD_SIZE) / 2;
     }
     
     @Override
     protected void paintComponent(Graphics g) {
+        long start = System.nanoTime();
         super.paintComponent(g);
         Graphics2D g2d = (Graphics2D) g;
         
+        int offsetX = boardX();
+        int offsetY = boardY();
+        
+        double scale = g2d.getTransform().getScaleX();
+        if (boardLayer == null || scale != boardLayerScale) {
+            boardLayer = renderBoardLayer(scale);
+            boardLayerScale = scale;
+        }
+        g2d.drawImage(boardLayer, offsetX - LAYER_MARGIN, offsetY - LAYER_MARGIN, LAYER_SIZE, LAYER_SIZE, null);
+        
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        Rectangle clip = g2d.getClipBounds();
+        for (int s = 0; s < SEATS; s++) {
+            if (shownIds[s] == 0) continue;
+            Motion m = motions[s];
+            Point cell = tokenCell(shownPositions[s], s);
+            int x = offsetX + (m != null ? (int) Math.round(m.x * CELL_SIZE) : cell.x * CELL_SIZE);
+            int y = offsetY + (m != null ? (int) Math.round(m.y * CELL_SIZE) : cell.y * CELL_SIZE);
+            if (clip != null && !clip.intersects(x, y, CELL_SIZE, CELL_SIZE)) continue;
+            drawToken(g2d, x, y, s, shownInitials[s]);
+        }
+        if (paintObserver != null) paintObserver.accept(System.nanoTime() - start);
+    }
+    
+    // Device-resolution image of the static board, so a HiDPI blit stays sharp
+    private BufferedImage renderBoardLayer(double scale) {
+        int pixels = (int) Math.ceil(LAYER_SIZE * scale);
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        BufferedImage image = gc != null
+                ? gc.createCompatibleImage(pixels, pixels, Transparency.TRANSLUCENT)
+                : new BufferedImage(pixels, pixels, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = image.createGraphics();
+        try {
+            g2d.setTransform(AffineTransform.getScaleInstance(scale, scale));
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            drawBoard(g2d, LAYER_MARGIN, LAYER_MARGIN);
+        } finally {
+            g2d.dispose();
+        }
+        return image;
+    }
+    
+    private void drawBoard(Graphics2D g2d, int offsetX, int offsetY) {
+        int boardSize = BOARD_SIZE;
         
-        int boardSize = GRID_SIZE * CELL_SIZE;
-        int offsetX = (getWidth() - boardSize) / 2;
-        int offsetY = (getHeight() - boardSize) / 2;
-        
-        g2d.setColor(new Color(0, 0, 0, 40));
+        g2d.setColor(BOARD_SHADOW);
         g2d.fillRoundRect(offsetX + 3, offsetY + 3, boardSize, boardSize, 15, 15);
         
         g2d.setColor(Color.WHITE);
@@ -142,10 +393,6 @@ public class BoardPanel extends JPanel {
         drawHomeTriangles(g2d, offsetX, offsetY);
         drawCenterHome(g2d, offsetX + boardSize / 2, offsetY + boardSize / 2);
         drawGridLines(g2d, offsetX, offsetY, boardSize);
-        
-        if (positions != null) {
-            drawTokens(g2d, offsetX, offsetY);
-        }
     }
     
     private void drawHomeArea(Graphics2D g2d, int x, int y, Color lightColor, Color darkColor) {
@@ -153,17 +400,17 @@ public class BoardPanel extends JPanel {
         g2d.fillRect(x, y, 6 * CELL_SIZE, 6 * CELL_SIZE);
         
         g2d.setColor(darkColor);
-        g2d.setStroke(new BasicStroke(3));
+        g2d.setStroke(THICK);
         g2d.drawRect(x, y, 6 * CELL_SIZE, 6 * CELL_SIZE);
         
         int centerX = x + 3 * CELL_SIZE;
         int centerY = y + 3 * CELL_SIZE;
         int circleSize = (int)(CELL_SIZE * 2.5);
         
-        g2d.setColor(new Color(255, 255, 255, 200));
+        g2d.setColor(HOME_CIRCLE);
         g2d.fillOval(centerX - circleSize/2, centerY - circleSize/2, circleSize, circleSize);
         g2d.setColor(darkColor);
-        g2d.setStroke(new BasicStroke(3));
+        g2d.setStroke(THICK);
         g2d.drawOval(centerX - circleSize/2, centerY - circleSize/2, circleSize, circleSize);
     }
     
@@ -193,10 +440,10 @@ public class BoardPanel extends JPanel {
         g2d.fillRect(x + 2, y + 2, CELL_SIZE - 4, CELL_SIZE - 4);
         
         g2d.setColor(color);
-        g2d.setStroke(new BasicStroke(2.5f));
+        g2d.setStroke(TOKEN_RIM);
         g2d.drawRect(x + 2, y + 2, CELL_SIZE - 4, CELL_SIZE - 4);
         
-        g2d.setFont(new Font("Segoe UI", Font.BOLD, 8));
+        g2d.setFont(START_FONT);
         g2d.setColor(Color.WHITE);
         FontMetrics fm = g2d.getFontMetrics();
         int textX = x + (CELL_SIZE - fm.stringWidth(text)) / 2;
@@ -256,13 +503,13 @@ public class BoardPanel extends JPanel {
         drawStar(g2d, centerX, centerY, circleSize/3);
         
         g2d.setColor(BORDER_COLOR);
-        g2d.setStroke(new BasicStroke(2));
+        g2d.setStroke(MEDIUM);
         g2d.drawOval(centerX - circleSize/2, centerY - circleSize/2, circleSize, circleSize);
     }
     
     private void drawGridLines(Graphics2D g2d, int offsetX, int offsetY, int boardSize) {
         g2d.setColor(BORDER_COLOR);
-        g2d.setStroke(new BasicStroke(1));
+        g2d.setStroke(THIN);
         
         for (int i = 0; i <= GRID_SIZE; i++) {
             int x = offsetX + i * CELL_SIZE;
@@ -274,94 +521,39 @@ public class BoardPanel extends JPanel {
             g2d.drawLine(offsetX, y, offsetX + boardSize, y);
         }
         
-        g2d.setStroke(new BasicStroke(3));
+        g2d.setStroke(THICK);
         g2d.drawRoundRect(offsetX, offsetY, boardSize, boardSize, 15, 15);
     }
     
-    private void drawTokens(Graphics2D g2d, int offsetX, int offsetY) {
-        Color[] playerColors = {RED, GREEN, YELLOW, BLUE};
-        
-        int index = 0;
-        for (Map.Entry<String, Integer> entry : positions.entrySet()) {
-            int pos = entry.getValue();
-            Color color = playerColors[colors != null && index < colors.length ? colors[index] : index % 4];
-            
-            if (pos == -1) {
-                drawTokenInHome(g2d, offsetX, offsetY, color, entry.getKey(), colors != null ? colors[index] : index % 4);
-            } else if (pos < 52) {
-                Point p = pathCoordinates[pos];
-                int x = offsetX + p.x * CELL_SIZE;
-                int y = offsetY + p.y * CELL_SIZE;
-                drawToken(g2d, x, y, color, entry.getKey());
-            } else {
-                drawTokenInHomeStretch(g2d, offsetX, offsetY, color, entry.getKey(), pos, colors != null ? colors[index] : index % 4);
-            }
-            
-            index++;
-        }
-    }
-    
-    private void drawTokenInHome(Graphics2D g2d, int offsetX, int offsetY, Color color, String label, int playerColor) {
-        int homeX = 0, homeY = 0;
-        
-        switch(playerColor) {
-            case 0: homeX = offsetX + 3 * CELL_SIZE; homeY = offsetY + 3 * CELL_SIZE; break;
-            case 1: homeX = offsetX + 12 * CELL_SIZE; homeY = offsetY + 3 * CELL_SIZE; break;
-            case 2: homeX = offsetX + 12 * CELL_SIZE; homeY = offsetY + 12 * CELL_SIZE; break;
-            case 3: homeX = offsetX + 3 * CELL_SIZE; homeY = offsetY + 12 * CELL_SIZE; break;
-        }
-        
-        drawToken(g2d, homeX, homeY, color, label);
+    // Cell (in grid units) a token occupies: its yard, a main-path square or its home column.
+    // Shared and never modified, so looking one up allocates nothing
+    private Point tokenCell(int pos, int playerColor) {
+        if (pos < 0) return YARD_CELLS[playerColor];
+        if (pos < 52) return pathCoordinates[pos];
+        return HOME_COLUMNS[playerColor][Math.min(pos - 52, 5)];
     }
     
-    private void drawTokenInHomeStretch(Graphics2D g2d, int offsetX, int offsetY, Color color, String label, int pos, int playerColor) {
-        int homePos = pos - 52;
-        int x = 0, y = 0;
-        
-        switch(playerColor) {
-            case 0: // Red
-                x = offsetX + (1 + homePos) * CELL_SIZE;
-                y = offsetY + 7 * CELL_SIZE;
-                break;
-            case 1: // Green
-                x = offsetX + 7 * CELL_SIZE;
-                y = offsetY + (1 + homePos) * CELL_SIZE;
-                break;
-            case 2: // Yellow
-                x = offsetX + 7 * CELL_SIZE;
-                y = offsetY + (13 - homePos) * CELL_SIZE;
-                break;
-            case 3: // Blue
-                x = offsetX + (13 - homePos) * CELL_SIZE;
-                y = offsetY + 7 * CELL_SIZE;
-                break;
-        }
-        
-        drawToken(g2d, x, y, color, label);
-    }
-    
-    private void drawToken(Graphics2D g2d, int x, int y, Color color, String label) {
+    private void drawToken(Graphics2D g2d, int x, int y, int playerColor, String initial) {
         int tokenSize = CELL_SIZE - 8;
         int centerX = x + CELL_SIZE / 2 - tokenSize / 2;
         int centerY = y + CELL_SIZE / 2 - tokenSize / 2;
         
-        g2d.setColor(new Color(0, 0, 0, 80));
+        g2d.setColor(TOKEN_SHADOW);
         g2d.fillOval(centerX + 2, centerY + 2, tokenSize, tokenSize);
         
-        g2d.setColor(color);
+        g2d.setColor(PLAYER_COLORS[playerColor]);
         g2d.fillOval(centerX, centerY, tokenSize, tokenSize);
         
-        g2d.setColor(color.darker());
-        g2d.setStroke(new BasicStroke(2.5f));
+        g2d.setColor(PLAYER_DARK[playerColor]);
+        g2d.setStroke(TOKEN_RIM);
         g2d.drawOval(centerX, centerY, tokenSize, tokenSize);
         
-        g2d.setColor(new Color(255, 255, 255, 150));
+        g2d.setColor(TOKEN_SHINE);
         g2d.fillOval(centerX + tokenSize/4, centerY + tokenSize/4, tokenSize/3, tokenSize/3);
         
         g2d.setColor(Color.WHITE);
-        g2d.setFont(new Font("Segoe UI", Font.BOLD, 12));
+        g2d.setFont(TOKEN_FONT);
         FontMetrics fm = g2d.getFontMetrics();
-        String initial = label.substring(0, Math.min(1, label.length())).toUpperCase();
         int textX = centerX + (tokenSize - fm.stringWidth(initial)) / 2;
         int textY = centerY + (tokenSize + fm.getAscent()) / 2 - 2;
         g2d.drawString(initial, textX, textY);
@@ -383,7 +575,7 @@ public class BoardPanel extends JPanel {
         g2d.setColor(STAR_COLOR);
         g2d.fillPolygon(xPoints, yPoints, points * 2);
         g2d.setColor(STAR_COLOR.darker());
-        g2d.setStroke(new BasicStroke(1));
+        g2d.setStroke(THIN);
         g2d.drawPolygon(xPoints, yPoints, points * 2);
     }
 }
\ No newline at end of file
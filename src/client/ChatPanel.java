@@ -1,13 +1,19 @@
 package client;
 
+import model.GameState;
 import model.Message;
 import javax.swing.*;
+import javax.swing.border.Border;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
-import java.time.LocalDateTime;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.List;
 
@@ -17,48 +23,75 @@ import java.util.List;
  */
 public class ChatPanel extends JPanel {
     
+    private static final int EVERYONE = GameState.NO_PLAYER; // Conversation key of the group chat
+    private static final int LOBBY = Message.LOBBY_CONVERSATION; // Server-wide chat across all rooms
+    private static final long TYPING_RESEND_MS = 2000; // At most one TYPING sent per this while typing
+    private static final long TYPING_EXPIRY_MS = 4000; // Indicator hides this long after the last update
+    // Messages kept per conversation while following the newest; older ones reload on scroll-up
+    private static final int MAX_MESSAGES = Integer.getInteger("ludo.chat.maxMessages", 500);
+    private static final long HISTORY_TIMEOUT_MS = 5000; // An unanswered page request may be sent again after this
+    private static final int HISTORY_RETRY_MS = 1000;    // Wait before asking again when the server throttled a page
+    private static final int MAX_SEARCH_HITS = 50;
+    private static final int SNIPPET_CHARS = 60;
+    
     private String username;
+    private int userId = GameState.NO_PLAYER;
     private ObjectOutputStream out;
-    private Map<String, List<ChatMessage>> chatHistory;
-    private String currentChat = "Everyone"; // Default to group chat
+    private Map<Integer, String> names = new HashMap<>(); // Roster: player id -> display name
+    private Map<Integer, String> statuses = new HashMap<>(); // Presence status per player id
+    private int currentChat = EVERYONE; // Default to group chat
     
     // UI Components
     private JTabbedPane tabbedPane;
     private JPanel groupChatPanel;
-    private Map<String, JPanel> privateChatPanels;
-    private JPanel groupMessagesPanel;
-    private Map<String, JPanel> privateMessagesPanels;
+    private Map<Integer, JPanel> privateChatPanels;
+    private Map<Integer, ChatView> chatViews;  // Conversation key -> its message view
     private JTextArea messageInput;
     private JButton sendButton;
-    private DefaultListModel<String> userListModel;
-    private JList<String> userList;
+    private DefaultListModel<Integer> userListModel;
+    private JList<Integer> userList;
+    private Map<Integer, Long> olderCursors;   // Server history cursor per conversation
+    private Map<Integer, Long> historyPending = new HashMap<>(); // Conversation -> when its page was asked for
+    private Map<Integer, Long> firstLiveSeq;   // First message received live, to drop overlap
+    private Map<Integer, Map<Integer, Long>> typers = new HashMap<>(); // conversation -> typer id -> expiry
+    private JLabel typingLabel;
+    private javax.swing.Timer typingTimer;     // Runs only while someone is shown as typing
+    private long lastTypingSent;
+    private final ChatSearchIndex searchIndex = new ChatSearchIndex(); // Every message held, all conversations
+    private JTextField searchField;
+    private DefaultListModel<ChatSearchIndex.Hit> searchResults;
+    private JList<ChatSearchIndex.Hit> searchList;
+    private JScrollPane searchScroll;
     
-    // Modern Blue Theme Colors with enhanced borders
-    private static final Color PRIMARY_COLOR = new Color(0, 123, 255);
-    private static final Color PRIMARY_HOVER = new Color(0, 105, 217);
+    // Chat-specific colours; the shared ones are in Theme
+    // Package-private where ChatView paints with them
     private static final Color DARK_BG = new Color(22, 22, 32);
     private static final Color PANEL_BG = new Color(28, 33, 50);
-    private static final Color CHAT_BG = new Color(33, 38, 58);
-    private static final Color SENT_BUBBLE = new Color(0, 123, 255);
-    private static final Color RECEIVED_BUBBLE = new Color(50, 57, 80);
-    private static final Color TEXT_COLOR = new Color(255, 255, 255);
-    private static final Color SECONDARY_TEXT = new Color(170, 180, 200);
+    static final Color CHAT_BG = new Color(33, 38, 58);
+    static final Color SENT_BUBBLE = Theme.PRIMARY_COLOR;
+    static final Color RECEIVED_BUBBLE = new Color(50, 57, 80);
     private static final Color DIVIDER_COLOR = new Color(50, 55, 75);
-    private static final Color BORDER_COLOR = new Color(60, 65, 85);
+    static final Color BORDER_COLOR = new Color(60, 65, 85);
+    // Shared by every row the list renderers draw
+    private static final Border USER_ROW_BORDER = BorderFactory.createCompoundBorder(
+        new EmptyBorder(8, 10, 8, 10), BorderFactory.createMatteBorder(0, 0, 1, 0, DIVIDER_COLOR));
+    private static final Border SEARCH_ROW_BORDER = BorderFactory.createCompoundBorder(
+        BorderFactory.createMatteBorder(0, 0, 1, 0, DIVIDER_COLOR), new EmptyBorder(5, 8, 5, 8));
     
     public ChatPanel(String username, ObjectOutputStream out) {
         this.username = username;
         this.out = out;
-        this.chatHistory = new HashMap<>();
         this.privateChatPanels = new HashMap<>();
-        this.privateMessagesPanels = new HashMap<>();
-        
-        chatHistory.put("Everyone", new ArrayList<>());
+        this.chatViews = new HashMap<>();
+        this.olderCursors = new HashMap<>();
+        this.firstLiveSeq = new HashMap<>();
         
         setLayout(new BorderLayout());
         setBackground(PANEL_BG);
         
         initComponents();
+        requestHistory(EVERYONE, 0);
+        requestHistory(LOBBY, 0);
     }
     
     private void initComponents() {
@@ -90,8 +123,8 @@ public class ChatPanel extends JPanel {
         
         // Header
         JLabel header = new JLabel("Players");
-        header.setFont(new Font("Segoe UI", Font.BOLD, 16));
-        header.setForeground(TEXT_COLOR);
+        header.setFont(Theme.font(Font.BOLD, 16));
+        header.setForeground(Theme.TEXT_COLOR);
         header.setBorder(BorderFactory.createCompoundBorder(
             new EmptyBorder(5, 5, 10, 5),
             BorderFactory.createMatteBorder(0, 0, 2, 0, BORDER_COLOR)
@@ -100,13 +133,14 @@ public class ChatPanel extends JPanel {
         
         // User list
         userListModel = new DefaultListModel<>();
-        userListModel.addElement("Everyone");
+        userListModel.addElement(EVERYONE);
+        userListModel.addElement(LOBBY);
         
         userList = new JList<>(userListModel);
         userList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         userList.setBackground(PANEL_BG);
-        userList.setForeground(TEXT_COLOR);
-        userList.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        userList.setForeground(Theme.TEXT_COLOR);
+        userList.setFont(Theme.font(Font.PLAIN, 14));
         userList.setBorder(new EmptyBorder(5, 5, 5, 5));
         userList.setCellRenderer(new DefaultListCellRenderer() {
             @Override
@@ -114,24 +148,31 @@ public class ChatPanel extends JPanel {
                     int index, boolean isSelected, boolean cellHasFocus) {
                 JLabel label = (JLabel) super.getListCellRendererComponent(
                     list, value, index, isSelected, cellHasFocus);
-                label.setBorder(BorderFactory.createCompoundBorder(
-                    new EmptyBorder(8, 10, 8, 10),
-                    BorderFactory.createMatteBorder(0, 0, 1, 0, DIVIDER_COLOR)
-                ));
+                label.setBorder(USER_ROW_BORDER);
                 label.setOpaque(true);
                 
                 if (isSelected) {
-                    label.setBackground(PRIMARY_COLOR);
+                    label.setBackground(Theme.PRIMARY_COLOR);
                     label.setForeground(Color.WHITE);
                 } else {
                     label.setBackground(PANEL_BG);
-                    label.setForeground(TEXT_COLOR);
+                    label.setForeground(Theme.TEXT_COLOR);
                 }
                 
-                if (value.equals("Everyone")) {
-                    label.setText("👥 " + value);
+                int id = (Integer) value;
+                if (id == EVERYONE) {
+                    label.setText("👥 Everyone");
+                } else if (id == LOBBY) {
+                    label.setText("🌐 Lobby");
                 } else {
-                    label.setText("👤 " + value);
+                    String status = statuses.get(id);
+                    if (Message.BOT.equals(status)) {
+                        label.setText("🤖 " + nameOf(id));
+                    } else if (Message.FINISHED.equals(status)) {
+                        label.setText("👤 " + nameOf(id) + " 🏁");
+                    } else {
+                        label.setText("👤 " + nameOf(id));
+                    }
                 }
                 
                 return label;
@@ -140,7 +181,7 @@ public class ChatPanel extends JPanel {
         
         userList.addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
-                String selected = userList.getSelectedValue();
+                Integer selected = userList.getSelectedValue();
                 if (selected != null) {
                     switchChat(selected);
                 }
@@ -159,17 +200,23 @@ public class ChatPanel extends JPanel {
         JPanel panel = new JPanel(new BorderLayout());
         panel.setBackground(CHAT_BG);
         
+        panel.add(createSearchPanel(), BorderLayout.NORTH);
+        
         // Messages area (will hold different chat panels)
         tabbedPane = new JTabbedPane();
         tabbedPane.setBackground(PANEL_BG);
-        tabbedPane.setForeground(TEXT_COLOR);
-        tabbedPane.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        tabbedPane.setForeground(Theme.TEXT_COLOR);
+        tabbedPane.setFont(Theme.font(Font.PLAIN, 13));
         
         // Create group chat panel
-        groupChatPanel = createMessagePanel();
-        groupMessagesPanel = (JPanel) ((JScrollPane) groupChatPanel.getComponent(1)).getViewport().getView();
+        groupChatPanel = createMessagePanel("Everyone", EVERYONE);
         tabbedPane.addTab("👥 Group Chat", groupChatPanel);
         
+        // The lobby is a fixed tab but otherwise behaves like a private conversation
+        JPanel lobbyPanel = createMessagePanel("Lobby · all rooms", LOBBY);
+        privateChatPanels.put(LOBBY, lobbyPanel);
+        tabbedPane.addTab("🌐 Lobby", lobbyPanel);
+        
         panel.add(tabbedPane, BorderLayout.CENTER);
         
         // Input area
@@ -179,7 +226,127 @@ public class ChatPanel extends JPanel {
         return panel;
     }
     
-    private JPanel createMessagePanel() {
+    private JPanel createSearchPanel() {
+        JPanel panel = new JPanel(new BorderLayout(0, 6));
+        panel.setBackground(PANEL_BG);
+        panel.setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createMatteBorder(0, 0, 2, 0, BORDER_COLOR),
+            new EmptyBorder(8, 15, 8, 15)
+        ));
+        
+        JPanel fieldRow = new JPanel(new BorderLayout(8, 0));
+        fieldRow.setBackground(PANEL_BG);
+        JLabel icon = new JLabel("🔍");
+        icon.setForeground(Theme.SECONDARY_TEXT);
+        fieldRow.add(icon, BorderLayout.WEST);
+        
+        searchField = new JTextField();
+        searchField.setFont(Theme.font(Font.PLAIN, 13));
+        searchField.setBackground(DARK_BG);
+        searchField.setForeground(Theme.TEXT_COLOR);
+        searchField.setCaretColor(Theme.TEXT_COLOR);
+        searchField.setBorder(new EmptyBorder(6, 10, 6, 10));
+        searchField.setToolTipText("Search all conversations");
+        fieldRow.add(searchField, BorderLayout.CENTER);
+        panel.add(fieldRow, BorderLayout.NORTH);
+        
+        searchResults = new DefaultListModel<>();
+        searchList = new JList<>(searchResults);
+        searchList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        searchList.setBackground(PANEL_BG);
+        searchList.setFont(Theme.font(Font.PLAIN, 13));
+        searchList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value,
+                    int index, boolean isSelected, boolean cellHasFocus) {
+                JLabel label = (JLabel) super.getListCellRendererComponent(
+                    list, value, index, isSelected, cellHasFocus);
+                label.setBorder(SEARCH_ROW_BORDER);
+                label.setOpaque(true);
+                label.setBackground(isSelected ? Theme.PRIMARY_COLOR : PANEL_BG);
+                label.setForeground(isSelected ? Color.WHITE : Theme.TEXT_COLOR);
+                
+                ChatSearchIndex.Hit hit = (ChatSearchIndex.Hit) value;
+                String content = hit.message.content;
+                if (content.length() > SNIPPET_CHARS) content = content.substring(0, SNIPPET_CHARS) + "…";
+                label.setText(conversationLabel(hit.chatKey) + " · " + hit.message.sender + ": " + content);
+                return label;
+            }
+        });
+        searchList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                openSearchHit(searchList.getSelectedValue());
+            }
+        });
+        searchList.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_ENTER) openSearchHit(searchList.getSelectedValue());
+                else if (e.getKeyCode() == KeyEvent.VK_ESCAPE) searchField.setText("");
+            }
+        });
+        
+        searchScroll = new JScrollPane(searchList);
+        searchScroll.setBorder(BorderFactory.createLineBorder(BORDER_COLOR, 1));
+        searchScroll.getViewport().setBackground(PANEL_BG);
+        searchScroll.setPreferredSize(new Dimension(0, 160));
+        searchScroll.setVisible(false);
+        panel.add(searchScroll, BorderLayout.CENTER);
+        
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) { runSearch(); }
+            @Override
+            public void removeUpdate(DocumentEvent e) { runSearch(); }
+            @Override
+            public void changedUpdate(DocumentEvent e) { runSearch(); }
+        });
+        searchField.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_ENTER) {
+                    openSearchHit(searchList.getSelectedValue() != null
+                            ? searchList.getSelectedValue()
+                            : (searchResults.isEmpty() ? null : searchResults.get(0)));
+                } else if (e.getKeyCode() == KeyEvent.VK_DOWN && !searchResults.isEmpty()) {
+                    searchList.setSelectedIndex(0);
+                    searchList.requestFocusInWindow();
+                } else if (e.getKeyCode() == KeyEvent.VK_ESCAPE) {
+                    searchField.setText("");
+                }
+            }
+        });
+        
+        return panel;
+    }
+    
+    // Re-queried on every keystroke: a lookup is a few sorted-map ranges, not a scan of the chat
+    private void runSearch() {
+        List<ChatSearchIndex.Hit> hits = searchIndex.search(searchField.getText(), MAX_SEARCH_HITS);
+        searchResults.clear();
+        for (ChatSearchIndex.Hit hit : hits) searchResults.addElement(hit);
+        boolean show = !searchField.getText().trim().isEmpty();
+        if (searchScroll.isVisible() != show) {
+            searchScroll.setVisible(show);
+            revalidate();
+        }
+    }
+    
+    private void openSearchHit(ChatSearchIndex.Hit hit) {
+        if (hit == null) return;
+        switchChat(hit.chatKey);
+        // The tab may have only just been laid out; reveal once it has a size
+        SwingUtilities.invokeLater(() -> chatViews.get(hit.chatKey).reveal(hit.message));
+    }
+    
+    private String conversationLabel(int chatKey) {
+        if (chatKey == EVERYONE) return "👥 Everyone";
+        if (chatKey == LOBBY) return "🌐 Lobby";
+        return "👤 " + nameOf(chatKey);
+    }
+    
+    private JPanel createMessagePanel(String title, int chatKey) {
         JPanel panel = new JPanel(new BorderLayout());
         panel.setBackground(CHAT_BG);
         panel.setBorder(BorderFactory.createLineBorder(BORDER_COLOR, 1));
@@ -192,30 +359,58 @@ public class ChatPanel extends JPanel {
             BorderFactory.createMatteBorder(0, 0, 2, 0, BORDER_COLOR)
         ));
         
-        JLabel chatLabel = new JLabel(currentChat);
-        chatLabel.setFont(new Font("Segoe UI", Font.BOLD, 16));
-        chatLabel.setForeground(TEXT_COLOR);
+        JLabel chatLabel = new JLabel(title);
+        chatLabel.setFont(Theme.font(Font.BOLD, 16));
+        chatLabel.setForeground(Theme.TEXT_COLOR);
         headerPanel.add(chatLabel, BorderLayout.WEST);
         
         panel.add(headerPanel, BorderLayout.NORTH);
         
-        // Messages panel
-        JPanel messagesPanel = new JPanel();
-        messagesPanel.setLayout(new BoxLayout(messagesPanel, BoxLayout.Y_AXIS));
-        messagesPanel.setBackground(CHAT_BG);
-        messagesPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
+        // Messages view: only the visible rows are painted
+        ChatView view = new ChatView();
+        chatViews.put(chatKey, view);
         
-        JScrollPane scrollPane = new JScrollPane(messagesPanel);
+        JScrollPane scrollPane = new JScrollPane(view);
         scrollPane.setBorder(BorderFactory.createLineBorder(DIVIDER_COLOR, 1));
         scrollPane.getViewport().setBackground(CHAT_BG);
         scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
-        scrollPane.getVerticalScrollBar().setUnitIncrement(16);
+        
+        // Reaching the top fetches the previous page; the wheel covers views too short to scroll
+        scrollPane.getVerticalScrollBar().getModel().addChangeListener(e -> {
+            if (view.rowCount() > 0 && view.isAtTop()) loadOlder(chatKey);
+        });
+        view.addMouseWheelListener(e -> {
+            if (e.getWheelRotation() < 0 && view.isAtTop()) loadOlder(chatKey);
+            scrollPane.dispatchEvent(SwingUtilities.convertMouseEvent(view, e, scrollPane));
+        });
         
         panel.add(scrollPane, BorderLayout.CENTER);
         
         return panel;
     }
     
+    // One page per conversation at a time; a request lost on the way stops blocking after a timeout
+    private void loadOlder(int chatKey) {
+        Long asked = historyPending.get(chatKey);
+        if (asked != null && System.currentTimeMillis() - asked < HISTORY_TIMEOUT_MS) return;
+        Long cursor = olderCursors.get(chatKey);
+        if (cursor == null) {
+            requestHistory(chatKey, 0); // The first page never arrived
+        } else if (cursor > 0) {
+            requestHistory(chatKey, cursor);
+        }
+    }
+    
+    private void requestHistory(int chatKey, long cursor) {
+        historyPending.put(chatKey, System.currentTimeMillis());
+        try {
+            out.writeObject(new Message(Message.HISTORY, String.valueOf(cursor), userId, chatKey));
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Error requesting chat history: " + e.getMessage());
+        }
+    }
+    
     private JPanel createInputPanel() {
         JPanel panel = new JPanel(new BorderLayout(10, 0));
         panel.setBackground(PANEL_BG);
@@ -226,25 +421,25 @@ public class ChatPanel extends JPanel {
         
         // Message input
         messageInput = new JTextArea(2, 30);
-        messageInput.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        messageInput.setFont(Theme.font(Font.PLAIN, 14));
         messageInput.setLineWrap(true);
         messageInput.setWrapStyleWord(true);
         messageInput.setBackground(DARK_BG);
-        messageInput.setForeground(TEXT_COLOR);
-        messageInput.setCaretColor(TEXT_COLOR);
+        messageInput.setForeground(Theme.TEXT_COLOR);
+        messageInput.setCaretColor(Theme.TEXT_COLOR);
         messageInput.setBorder(new EmptyBorder(10, 12, 10, 12));
         
         // Placeholder
         String placeholder = "Type a message...";
         messageInput.setText(placeholder);
-        messageInput.setForeground(SECONDARY_TEXT);
+        messageInput.setForeground(Theme.SECONDARY_TEXT);
         
         messageInput.addFocusListener(new FocusAdapter() {
             @Override
             public void focusGained(FocusEvent e) {
                 if (messageInput.getText().equals(placeholder)) {
                     messageInput.setText("");
-                    messageInput.setForeground(TEXT_COLOR);
+                    messageInput.setForeground(Theme.TEXT_COLOR);
                 }
             }
             
@@ -252,7 +447,7 @@ public class ChatPanel extends JPanel {
             public void focusLost(FocusEvent e) {
                 if (messageInput.getText().trim().isEmpty()) {
                     messageInput.setText(placeholder);
-                    messageInput.setForeground(SECONDARY_TEXT);
+                    messageInput.setForeground(Theme.SECONDARY_TEXT);
                 }
             }
         });
@@ -265,8 +460,21 @@ public class ChatPanel extends JPanel {
                     sendMessage();
                 }
             }
+            
+            @Override
+            public void keyTyped(KeyEvent e) {
+                if (e.getKeyChar() != '\n') {
+                    noteTyping();
+                }
+            }
         });
         
+        typingLabel = new JLabel(" ");
+        typingLabel.setFont(Theme.font(Font.ITALIC, 12));
+        typingLabel.setForeground(Theme.SECONDARY_TEXT);
+        typingLabel.setBorder(new EmptyBorder(0, 2, 6, 0));
+        panel.add(typingLabel, BorderLayout.NORTH);
+        
         JScrollPane inputScroll = new JScrollPane(messageInput);
         inputScroll.setBorder(BorderFactory.createCompoundBorder(
             BorderFactory.createLineBorder(BORDER_COLOR, 2),
@@ -276,24 +484,24 @@ public class ChatPanel extends JPanel {
         
         // Send button
         sendButton = new JButton("Send");
-        sendButton.setFont(new Font("Segoe UI", Font.BOLD, 14));
-        sendButton.setBackground(PRIMARY_COLOR);
+        sendButton.setFont(Theme.font(Font.BOLD, 14));
+        sendButton.setBackground(Theme.PRIMARY_COLOR);
         sendButton.setForeground(Color.WHITE);
         sendButton.setFocusPainted(false);
         sendButton.setBorderPainted(false);
-        sendButton.setBorder(BorderFactory.createLineBorder(PRIMARY_HOVER, 2));
+        sendButton.setBorder(BorderFactory.createLineBorder(Theme.PRIMARY_HOVER, 2));
         sendButton.setPreferredSize(new Dimension(80, 50));
         sendButton.setCursor(new Cursor(Cursor.HAND_CURSOR));
         
         sendButton.addMouseListener(new MouseAdapter() {
             @Override
             public void mouseEntered(MouseEvent e) {
-                sendButton.setBackground(PRIMARY_HOVER);
+                sendButton.setBackground(Theme.PRIMARY_HOVER);
             }
             
             @Override
             public void mouseExited(MouseEvent e) {
-                sendButton.setBackground(PRIMARY_COLOR);
+                sendButton.setBackground(Theme.PRIMARY_COLOR);
             }
         });
         
@@ -311,10 +519,12 @@ public class ChatPanel extends JPanel {
         
         try {
             Message msg;
-            if (currentChat.equals("Everyone")) {
-                msg = new Message(Message.PUBLIC_CHAT, text, username);
+            if (currentChat == EVERYONE) {
+                msg = new Message(Message.PUBLIC_CHAT, text, userId);
+            } else if (currentChat == LOBBY) {
+                msg = new Message(Message.LOBBY_CHAT, text, userId, LOBBY);
             } else {
-                msg = new Message(Message.PRIVATE_CHAT, text, username, currentChat);
+                msg = new Message(Message.PRIVATE_CHAT, text, userId, currentChat);
             }
             
             out.writeObject(msg);
@@ -322,163 +532,271 @@ public class ChatPanel extends JPanel {
             
             // Don't add locally - server will echo back to avoid duplicates
             
+            lastTypingSent = 0; // The next keystroke starts a new typing burst
             messageInput.setText("");
-            messageInput.setForeground(TEXT_COLOR);
+            messageInput.setForeground(Theme.TEXT_COLOR);
             
         } catch (IOException e) {
             JOptionPane.showMessageDialog(this, "Error sending message: " + e.getMessage());
         }
     }
     
+    // Debounced: while typing continues, one TYPING goes out every TYPING_RESEND_MS
+    private void noteTyping() {
+        long now = System.currentTimeMillis();
+        if (currentChat == LOBBY || now - lastTypingSent < TYPING_RESEND_MS) return;
+        lastTypingSent = now;
+        try {
+            out.writeObject(new Message(Message.TYPING, "", userId, currentChat));
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Error sending typing update: " + e.getMessage());
+        }
+    }
+    
+    /** A coalesced typing update: recipient 0 is the group chat, otherwise a private chat with each typer. */
+    public void receiveTyping(Message msg) {
+        UiBatcher.onEdt(() -> {
+            long expiry = System.currentTimeMillis() + TYPING_EXPIRY_MS;
+            for (int typer : msg.getUserIds()) {
+                if (typer == userId) continue;
+                int chatKey = msg.getRecipientId() == EVERYONE ? EVERYONE : typer;
+                typers.computeIfAbsent(chatKey, k -> new HashMap<>()).put(typer, expiry);
+            }
+            refreshTyping();
+        });
+    }
+    
+    private void refreshTyping() {
+        long now = System.currentTimeMillis();
+        typers.values().forEach(t -> t.values().removeIf(expiry -> expiry <= now));
+        typers.values().removeIf(Map::isEmpty);
+        
+        Map<Integer, Long> current = typers.get(currentChat);
+        if (current == null) {
+            typingLabel.setText(" ");
+        } else if (current.size() == 1) {
+            typingLabel.setText(nameOf(current.keySet().iterator().next()) + " is typing…");
+        } else if (current.size() == 2) {
+            Iterator<Integer> it = current.keySet().iterator();
+            typingLabel.setText(nameOf(it.next()) + " and " + nameOf(it.next()) + " are typing…");
+        } else {
+            typingLabel.setText("Several people are typing…");
+        }
+        
+        if (typers.isEmpty()) {
+            if (typingTimer != null) typingTimer.stop();
+        } else {
+            if (typingTimer == null) {
+                typingTimer = new javax.swing.Timer(500, e -> refreshTyping());
+            }
+            if (!typingTimer.isRunning()) typingTimer.start();
+        }
+    }
+    
     public void receiveMessage(Message msg) {
-        SwingUtilities.invokeLater(() -> {
-            String sender = msg.getPlayerName();
+        UiBatcher.onEdt(() -> {
+            // Lobby senders may be in another room, so their name comes with the message
+            String sender = !names.containsKey(msg.getPlayerId()) && msg.getPlayerName() != null
+                    ? msg.getPlayerName() : nameOf(msg.getPlayerId());
             String content = msg.getContent();
+            boolean isSent = msg.getPlayerId() == userId;
             
-            if (msg.getType().equals(Message.PUBLIC_CHAT)) {
-                addMessageToChat("Everyone", sender, content, sender.equals(username));
-            } else if (msg.getType().equals(Message.PRIVATE_CHAT)) {
-                String chatKey = sender.equals(username) ? msg.getRecipient() : sender;
-                addMessageToChat(chatKey, sender, content, sender.equals(username));
+            Integer chatKey = chatKeyFor(msg, isSent);
+            if (chatKey != null) {
+                if (msg.getSequence() > 0) {
+                    firstLiveSeq.putIfAbsent(chatKey, msg.getSequence());
+                }
+                addMessageToChat(chatKey, sender, content, msg.getTimestamp(), msg.getSequence(), isSent);
+                // A message from someone ends their typing indicator
+                Map<Integer, Long> typing = typers.get(chatKey);
+                if (typing != null && typing.remove(msg.getPlayerId()) != null) refreshTyping();
             }
         });
     }
     
-    private void addMessageToChat(String chatKey, String sender, String content, boolean isSent) {
-        if (!chatHistory.containsKey(chatKey)) {
-            chatHistory.put(chatKey, new ArrayList<>());
-        }
-        
-        ChatMessage chatMsg = new ChatMessage(sender, content, LocalDateTime.now(), isSent);
-        chatHistory.get(chatKey).add(chatMsg);
-        
-        // Update UI
-        JPanel messagesPanel = chatKey.equals("Everyone") ? groupMessagesPanel : privateMessagesPanels.get(chatKey);
-        if (messagesPanel != null) {
-            addMessageBubble(messagesPanel, chatMsg);
+    /**
+     * Prepends a page of server history to the matching conversation. History is
+     * stored by name because session ids do not outlive a server run.
+     */
+    public void receiveHistory(Message msg) {
+        UiBatcher.onEdt(() -> {
+            int chatKey = msg.getRecipientId();
+            ChatView view = chatViews.get(chatKey);
+            if (view == null) return;
+            
+            if (Message.REJECTED.equals(msg.getContent())) {
+                // Throttled by the server: ask again shortly, from wherever this conversation had got to
+                historyPending.remove(chatKey);
+                javax.swing.Timer retry = new javax.swing.Timer(HISTORY_RETRY_MS, e -> loadOlder(chatKey));
+                retry.setRepeats(false);
+                retry.start();
+                return;
+            }
+            
+            boolean initialPage = !olderCursors.containsKey(chatKey);
+            Long liveFrom = firstLiveSeq.get(chatKey);
+            List<ChatMessage> page = new ArrayList<>();
+            for (Message m : msg.getHistory()) {
+                if (liveFrom != null && m.getSequence() >= liveFrom) break;
+                page.add(new ChatMessage(m.getPlayerName(), m.getContent(), m.getTimestamp(),
+                        m.getPlayerName().equals(username), m.getSequence()));
+            }
+            view.prepend(page);
+            for (ChatMessage m : page) searchIndex.add(chatKey, m);
+            if (initialPage) view.scrollToEnd();
+            
+            long cursor = 0;
+            try {
+                cursor = Long.parseLong(msg.getContent());
+            } catch (NumberFormatException ignored) {}
+            olderCursors.put(chatKey, cursor);
+            historyPending.remove(chatKey);
+            // Keep fetching until the view can scroll, or there is nothing older
+            if (view.fitsViewport()) loadOlder(chatKey);
+        });
+    }
+    
+    private Integer chatKeyFor(Message msg, boolean isSent) {
+        if (msg.getType().equals(Message.PUBLIC_CHAT)) {
+            return EVERYONE;
+        } else if (msg.getType().equals(Message.LOBBY_CHAT)) {
+            return LOBBY;
+        } else if (msg.getType().equals(Message.PRIVATE_CHAT)) {
+            return isSent ? msg.getRecipientId() : msg.getPlayerId();
         }
+        return null;
     }
     
-    private void addMessageBubble(JPanel messagesPanel, ChatMessage msg) {
-        JPanel bubblePanel = new JPanel();
-        bubblePanel.setLayout(new BoxLayout(bubblePanel, BoxLayout.Y_AXIS));
-        bubblePanel.setOpaque(false);
-        bubblePanel.setBorder(new EmptyBorder(5, 5, 5, 5));
-        
-        // Message bubble
-        JPanel bubble = new JPanel(new BorderLayout(8, 2));
-        bubble.setBackground(msg.isSent ? SENT_BUBBLE : RECEIVED_BUBBLE);
-        bubble.setBorder(BorderFactory.createCompoundBorder(
-            BorderFactory.createLineBorder(msg.isSent ? PRIMARY_HOVER : BORDER_COLOR, 1),
-            new EmptyBorder(10, 14, 10, 14)
-        ));
-        
-        // Sender name (if not sent by current user)
-        if (!msg.isSent) {
-            JLabel senderLabel = new JLabel(msg.sender);
-            senderLabel.setFont(new Font("Segoe UI", Font.BOLD, 12));
-            senderLabel.setForeground(PRIMARY_COLOR);
-            bubble.add(senderLabel, BorderLayout.NORTH);
+    private String nameOf(int id) {
+        String name = names.get(id);
+        return name != null ? name : "Player " + id;
+    }
+    
+    private void addMessageToChat(int chatKey, String sender, String content, long timestamp, long sequence, boolean isSent) {
+        // Conversations without a tab are fetched from the server when it opens
+        ChatView view = chatViews.get(chatKey);
+        if (view == null) return;
+        
+        boolean following = view.isAtBottom() || isSent;
+        ChatMessage message = new ChatMessage(sender, content, timestamp != 0 ? timestamp : System.currentTimeMillis(), isSent, sequence);
+        view.append(message);
+        searchIndex.add(chatKey, message);
+        if (!following) return; // Leave someone reading older messages where they are
+        
+        // Evicted messages stay on the server; scrolling back up fetches them again
+        List<ChatMessage> evicted = view.trimOldest(MAX_MESSAGES);
+        for (ChatMessage m : evicted) searchIndex.remove(m);
+        if (!evicted.isEmpty() && view.oldest().sequence > 0) {
+            olderCursors.put(chatKey, view.oldest().sequence);
         }
-        
-        // Message content
-        JTextArea contentArea = new JTextArea(msg.content);
-        contentArea.setFont(new Font("Segoe UI", Font.PLAIN, 14));
-        contentArea.setForeground(TEXT_COLOR);
-        contentArea.setBackground(msg.isSent ? SENT_BUBBLE : RECEIVED_BUBBLE);
-        contentArea.setLineWrap(true);
-        contentArea.setWrapStyleWord(true);
-        contentArea.setEditable(false);
-        contentArea.setFocusable(false);
-        contentArea.setBorder(null);
-        bubble.add(contentArea, BorderLayout.CENTER);
-        
-        // Timestamp
-        JLabel timeLabel = new JLabel(msg.getFormattedTime());
-        timeLabel.setFont(new Font("Segoe UI", Font.PLAIN, 11));
-        timeLabel.setForeground(SECONDARY_TEXT);
-        bubble.add(timeLabel, BorderLayout.SOUTH);
-        
-        // Wrapper for alignment
-        JPanel wrapper = new JPanel(new FlowLayout(msg.isSent ? FlowLayout.RIGHT : FlowLayout.LEFT, 5, 0));
-        wrapper.setOpaque(false);
-        wrapper.add(bubble);
-        
-        bubblePanel.add(wrapper);
-        messagesPanel.add(bubblePanel);
-        messagesPanel.revalidate();
-        
-        // Auto scroll to bottom
-        SwingUtilities.invokeLater(() -> {
-            JScrollPane scrollPane = (JScrollPane) messagesPanel.getParent().getParent();
-            JScrollBar vertical = scrollPane.getVerticalScrollBar();
-            vertical.setValue(vertical.getMaximum());
-        });
+        view.scrollToEnd();
     }
     
-    private void switchChat(String chatName) {
-        currentChat = chatName;
+    private void switchChat(int chatId) {
+        currentChat = chatId;
+        refreshTyping();
         
-        if (chatName.equals("Everyone")) {
+        if (chatId == EVERYONE) {
             tabbedPane.setSelectedIndex(0);
         } else {
             // Check if private chat tab exists, if not create it
-            if (!privateChatPanels.containsKey(chatName)) {
-                createPrivateChatTab(chatName);
+            if (!privateChatPanels.containsKey(chatId)) {
+                createPrivateChatTab(chatId);
             }
             
             // Switch to that tab
-            for (int i = 0; i < tabbedPane.getTabCount(); i++) {
-                if (tabbedPane.getTitleAt(i).contains(chatName)) {
-                    tabbedPane.setSelectedIndex(i);
-                    break;
-                }
-            }
+            tabbedPane.setSelectedComponent(privateChatPanels.get(chatId));
         }
     }
     
-    private void createPrivateChatTab(String playerName) {
-        JPanel chatPanel = createMessagePanel();
-        JPanel messagesPanel = (JPanel) ((JScrollPane) chatPanel.getComponent(1)).getViewport().getView();
+    private void createPrivateChatTab(int playerId) {
+        String playerName = nameOf(playerId);
+        JPanel chatPanel = createMessagePanel(playerName, playerId);
         
-        privateChatPanels.put(playerName, chatPanel);
-        privateMessagesPanels.put(playerName, messagesPanel);
-        chatHistory.put(playerName, new ArrayList<>());
+        privateChatPanels.put(playerId, chatPanel);
+        // Messages that arrived before the tab existed are recovered from the server
+        firstLiveSeq.remove(playerId);
         
         tabbedPane.addTab("👤 " + playerName, chatPanel);
+        requestHistory(playerId, 0);
+    }
+    
+    /** Our own id, assigned by the server's WELCOME reply to JOIN. */
+    public void setUserId(int userId) {
+        UiBatcher.onEdt(() -> this.userId = userId);
     }
     
-    public void updateUserList(String[] users) {
-        SwingUtilities.invokeLater(() -> {
+    /** Applies a full roster snapshot: ids paired with display names and statuses. */
+    public void updateUserList(int[] ids, String[] users, String[] userStatuses) {
+        UiBatcher.onEdt(() -> {
+            statuses.clear();
+            for (int i = 0; i < ids.length; i++) {
+                names.put(ids[i], users[i]);
+                if (userStatuses != null) statuses.put(ids[i], userStatuses[i]);
+            }
+            
             userListModel.clear();
-            userListModel.addElement("Everyone");
+            userListModel.addElement(EVERYONE);
+            userListModel.addElement(LOBBY);
             
-            for (String user : users) {
-                if (!user.equals(username)) {
-                    userListModel.addElement(user);
+            for (int id : ids) {
+                if (id != userId) {
+                    userListModel.addElement(id);
+                }
+            }
+        });
+    }
+
+    /** Applies a single presence change without rebuilding the list. */
+    public void applyPresence(String event, int id, String name, String status) {
+        UiBatcher.onEdt(() -> {
+            // Names are kept after LEFT so old messages still show who sent them
+            names.put(id, name);
+            int index = userListModel.indexOf(id);
+            if (Message.LEFT.equals(event)) {
+                statuses.remove(id);
+                if (index >= 0) userListModel.remove(index);
+            } else {
+                statuses.put(id, status);
+                if (index >= 0) {
+                    userListModel.set(index, id); // Repaints the row with its new status
+                } else if (id != userId) {
+                    userListModel.addElement(id);
                 }
             }
         });
     }
     
-    // Inner class for chat message
-    private static class ChatMessage {
+    // One chat row; the layout fields are ChatView's cache for the width it was laid out at
+    static class ChatMessage {
+        private static final DateTimeFormatter TIME_FORMAT =
+                DateTimeFormatter.ofPattern("HH:mm").withZone(ZoneId.systemDefault());
+
         String sender;
         String content;
-        LocalDateTime timestamp;
+        long timestamp; // Epoch millis
         boolean isSent;
+        long sequence;  // Server history sequence (0 = not stored)
+        private String time;
+        
+        int layoutWidth = -1;
+        String[] lines;
+        int bubbleWidth;
+        int height;
+        int searchId = -1; // ChatSearchIndex id while indexed
         
-        ChatMessage(String sender, String content, LocalDateTime timestamp, boolean isSent) {
+        ChatMessage(String sender, String content, long timestamp, boolean isSent, long sequence) {
             this.sender = sender;
             this.content = content;
             this.timestamp = timestamp;
             this.isSent = isSent;
+            this.sequence = sequence;
         }
         
         String getFormattedTime() {
-            int hour = timestamp.getHour();
-            int minute = timestamp.getMinute();
-            return String.format("%02d:%02d", hour, minute);
+            if (time == null) time = TIME_FORMAT.format(Instant.ofEpochMilli(timestamp));
+            return time;
         }
     }
 }
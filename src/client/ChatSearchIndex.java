@@ -0,0 +1,175 @@
+package client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Inverted index over every chat message the client holds, in all
+ * conversations. Words of each message (and its sender) are lower-cased and
+ * mapped to the ids of the messages containing them; the words are kept
+ * sorted, so a prefix query is one TreeMap range. A query matches messages
+ * containing a word starting with each of its terms. Adding a message costs
+ * one posting per distinct word; a removed message is only marked dead, and
+ * the postings are swept once the dead outnumber the live. EDT only.
+ */
+class ChatSearchIndex {
+    private static final int MIN_SWEEP = 1024; // Dead entries tolerated before sweeping at all
+
+    /** A match: the conversation it is in and the row itself. */
+    static final class Hit {
+        final int chatKey;
+        final ChatPanel.ChatMessage message;
+
+        Hit(int chatKey, ChatPanel.ChatMessage message) {
+            this.chatKey = chatKey;
+            this.message = message;
+        }
+    }
+
+    /** Ids of the messages containing one word, in the order they were added. */
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id) return; // Word repeated in the same message
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+    }
+
+    private final TreeMap<String, Postings> words = new TreeMap<>();
+    private ChatPanel.ChatMessage[] docs = new ChatPanel.ChatMessage[256]; // By id; null once removed
+    private int[] docChats = new int[256];
+    private int nextId;
+    private int live;
+
+    void add(int chatKey, ChatPanel.ChatMessage msg) {
+        if (msg.searchId >= 0) return;
+        if (nextId == docs.length) {
+            docs = Arrays.copyOf(docs, nextId * 2);
+            docChats = Arrays.copyOf(docChats, nextId * 2);
+        }
+        int id = nextId++;
+        docs[id] = msg;
+        docChats[id] = chatKey;
+        msg.searchId = id;
+        live++;
+        for (String word : tokenize(msg.content)) words.computeIfAbsent(word, w -> new Postings()).add(id);
+        for (String word : tokenize(msg.sender)) words.computeIfAbsent(word, w -> new Postings()).add(id);
+    }
+
+    void remove(ChatPanel.ChatMessage msg) {
+        if (msg.searchId < 0 || docs[msg.searchId] != msg) return;
+        docs[msg.searchId] = null;
+        msg.searchId = -1;
+        live--;
+        int dead = nextId - live;
+        if (dead > MIN_SWEEP && dead > live) sweep();
+    }
+
+    int size() {
+        return live;
+    }
+
+    /**
+     * Messages matching every term of the query as a word prefix, newest first
+     * by timestamp. Ids only say when a message reached the index, and history
+     * pages arrive after the live messages that are newer than them.
+     */
+    List<Hit> search(String query, int limit) {
+        List<String> terms = tokenize(query);
+        List<Hit> hits = new ArrayList<>();
+        if (terms.isEmpty()) return hits;
+        BitSet matches = null;
+        for (String term : terms) {
+            BitSet termMatches = new BitSet(nextId);
+            for (Postings p : words.subMap(term, true, term + Character.MAX_VALUE, true).values()) {
+                for (int i = 0; i < p.size; i++) termMatches.set(p.ids[i]);
+            }
+            if (matches == null) {
+                matches = termMatches;
+            } else {
+                matches.and(termMatches);
+            }
+            if (matches.isEmpty()) return hits;
+        }
+        // Keeps the newest limit matches, with the oldest of them on top to be replaced
+        PriorityQueue<Integer> newest = new PriorityQueue<>((a, b) -> newer(b, a) ? -1 : 1);
+        for (int id = matches.nextSetBit(0); id >= 0; id = matches.nextSetBit(id + 1)) {
+            if (docs[id] == null) continue;
+            if (newest.size() < limit) {
+                newest.add(id);
+            } else if (newer(id, newest.peek())) {
+                newest.poll();
+                newest.add(id);
+            }
+        }
+        while (!newest.isEmpty()) {
+            int id = newest.poll();
+            hits.add(new Hit(docChats[id], docs[id]));
+        }
+        Collections.reverse(hits);
+        return hits;
+    }
+
+    // Later timestamp wins; on a tie, the one indexed later
+    private boolean newer(int a, int b) {
+        long ta = docs[a].timestamp;
+        long tb = docs[b].timestamp;
+        return ta != tb ? ta > tb : a > b;
+    }
+
+    // Renumbers the live messages from 0 and drops dead ids from every word
+    private void sweep() {
+        int[] renumber = new int[nextId];
+        int n = 0;
+        for (int id = 0; id < nextId; id++) {
+            if (docs[id] == null) {
+                renumber[id] = -1;
+                continue;
+            }
+            renumber[id] = n;
+            docs[n] = docs[id];
+            docChats[n] = docChats[id];
+            docs[n].searchId = n;
+            n++;
+        }
+        Arrays.fill(docs, n, nextId, null);
+        nextId = n;
+        for (Iterator<Map.Entry<String, Postings>> it = words.entrySet().iterator(); it.hasNext(); ) {
+            Postings p = it.next().getValue();
+            int kept = 0;
+            for (int i = 0; i < p.size; i++) {
+                int id = renumber[p.ids[i]];
+                if (id >= 0) p.ids[kept++] = id;
+            }
+            p.size = kept;
+            if (kept == 0) it.remove();
+        }
+    }
+
+    /** Lower-cased runs of letters and digits. */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (word.length() > 0) {
+                tokens.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,315 @@
+package client;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One conversation's messages, painted directly instead of as a component per
+ * bubble. Each row's wrapped lines and height are cached on the message for
+ * the current width, so scrolling and repaints only lay out text again after a
+ * resize, and paintComponent draws just the rows inside the clip.
+ */
+class ChatView extends JComponent implements Scrollable {
+    private static final Font SENDER_FONT = Theme.font(Font.BOLD, 12);
+    private static final Font CONTENT_FONT = Theme.font(Font.PLAIN, 14);
+    private static final Font TIME_FONT = Theme.font(Font.PLAIN, 11);
+    private static final int ROW_PAD = 5;      // Space around each row
+    private static final int SIDE_GAP = 5;     // Bubble inset from the left or right edge
+    private static final int PAD_X = 14;       // Inside the bubble
+    private static final int PAD_Y = 10;
+    private static final int LINE_GAP = 2;     // Between sender, text and time
+    private static final double MAX_BUBBLE = 0.75; // Of the view width
+    private static final Color HIGHLIGHT = Theme.WARNING_COLOR;
+    private static final int HIGHLIGHT_MS = 1500;   // How long a revealed row stays outlined
+
+    private final List<ChatPanel.ChatMessage> rows = new ArrayList<>();
+    private int[] tops = new int[1]; // tops[i] is row i's y; tops[rows.size()] is the total height
+    private int laidOutWidth = -1;
+    private boolean layoutValid;
+    private ChatPanel.ChatMessage highlighted;
+    private final Timer highlightTimer = new Timer(HIGHLIGHT_MS, e -> setHighlighted(null));
+
+    ChatView() {
+        setOpaque(true);
+        setBackground(ChatPanel.CHAT_BG);
+        highlightTimer.setRepeats(false);
+    }
+
+    int rowCount() {
+        return rows.size();
+    }
+
+    ChatPanel.ChatMessage oldest() {
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    void append(ChatPanel.ChatMessage msg) {
+        rows.add(msg);
+        changed();
+    }
+
+    /** Inserts older messages (oldest first) above the current ones and keeps the visible rows in place. */
+    void prepend(List<ChatPanel.ChatMessage> older) {
+        if (older.isEmpty()) return;
+        int before = totalHeight();
+        rows.addAll(0, older);
+        changed();
+        shiftView(totalHeight() - before);
+    }
+
+    /** Drops the oldest messages beyond max and returns them. */
+    List<ChatPanel.ChatMessage> trimOldest(int max) {
+        int excess = rows.size() - max;
+        if (excess <= 0) return Collections.emptyList();
+        int before = totalHeight();
+        List<ChatPanel.ChatMessage> oldest = rows.subList(0, excess);
+        List<ChatPanel.ChatMessage> removed = new ArrayList<>(oldest);
+        oldest.clear();
+        changed();
+        shiftView(totalHeight() - before);
+        return removed;
+    }
+
+    /** Scrolls a row to the middle of the view and outlines it briefly; false if it is no longer here. */
+    boolean reveal(ChatPanel.ChatMessage msg) {
+        int i = rows.indexOf(msg);
+        if (i < 0) return false;
+        JViewport viewport = viewport();
+        if (viewport != null) {
+            int height = totalHeight();
+            setSize(getWidth(), Math.max(height, viewport.getHeight()));
+            int y = tops[i] - (viewport.getHeight() - (tops[i + 1] - tops[i])) / 2;
+            viewport.setViewPosition(new Point(0, Math.max(0, Math.min(y, height - viewport.getHeight()))));
+        }
+        setHighlighted(msg);
+        highlightTimer.restart();
+        return true;
+    }
+
+    private void setHighlighted(ChatPanel.ChatMessage msg) {
+        highlighted = msg;
+        repaint();
+    }
+
+    boolean isAtBottom() {
+        JViewport viewport = viewport();
+        if (viewport == null) return true;
+        Rectangle visible = viewport.getViewRect();
+        return visible.y + visible.height >= totalHeight() - ROW_PAD;
+    }
+
+    boolean isAtTop() {
+        JViewport viewport = viewport();
+        return viewport == null || viewport.getViewPosition().y <= 0;
+    }
+
+    /** True while everything fits without scrolling, so scrolling up cannot ask for more. */
+    boolean fitsViewport() {
+        JViewport viewport = viewport();
+        return viewport != null && totalHeight() <= viewport.getHeight();
+    }
+
+    void scrollToEnd() {
+        JViewport viewport = viewport();
+        if (viewport == null) return;
+        int height = totalHeight();
+        setSize(getWidth(), Math.max(height, viewport.getHeight()));
+        viewport.setViewPosition(new Point(0, Math.max(0, height - viewport.getHeight())));
+    }
+
+    private void changed() {
+        layoutValid = false;
+        revalidate();
+        repaint();
+    }
+
+    // Keeps what the user is reading still when rows are added or removed above it
+    private void shiftView(int delta) {
+        JViewport viewport = viewport();
+        if (viewport == null || delta == 0) return;
+        Point p = viewport.getViewPosition();
+        setSize(getWidth(), Math.max(totalHeight(), viewport.getHeight()));
+        viewport.setViewPosition(new Point(p.x, Math.max(0, p.y + delta)));
+    }
+
+    private JViewport viewport() {
+        return getParent() instanceof JViewport ? (JViewport) getParent() : null;
+    }
+
+    private int layoutWidth() {
+        JViewport viewport = viewport();
+        return viewport != null ? viewport.getWidth() : getWidth();
+    }
+
+    private int totalHeight() {
+        ensureLayout(layoutWidth());
+        return tops[rows.size()];
+    }
+
+    private void ensureLayout(int width) {
+        if (layoutValid && width == laidOutWidth) return;
+        if (tops.length < rows.size() + 1) tops = new int[rows.size() * 2 + 1];
+        int y = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            tops[i] = y;
+            y += layoutRow(rows.get(i), width);
+        }
+        tops[rows.size()] = y;
+        laidOutWidth = width;
+        layoutValid = true;
+    }
+
+    // Wraps the row for this width once; later calls reuse the cached result
+    private int layoutRow(ChatPanel.ChatMessage row, int width) {
+        if (row.layoutWidth == width) return row.height;
+        FontMetrics content = getFontMetrics(CONTENT_FONT);
+        FontMetrics sender = getFontMetrics(SENDER_FONT);
+        FontMetrics time = getFontMetrics(TIME_FONT);
+
+        int maxText = Math.max(40, (int) (width * MAX_BUBBLE) - 2 * (PAD_X + 1));
+        row.lines = wrap(row.content, content, maxText);
+        int textWidth = time.stringWidth(row.getFormattedTime());
+        if (!row.isSent) textWidth = Math.max(textWidth, sender.stringWidth(row.sender));
+        for (String line : row.lines) textWidth = Math.max(textWidth, content.stringWidth(line));
+
+        row.bubbleWidth = Math.min(textWidth, maxText) + 2 * (PAD_X + 1);
+        row.height = 2 * ROW_PAD + 2 + 2 * PAD_Y
+                + (row.isSent ? 0 : sender.getHeight() + LINE_GAP)
+                + row.lines.length * content.getHeight()
+                + LINE_GAP + time.getHeight();
+        row.layoutWidth = width;
+        return row.height;
+    }
+
+    private static String[] wrap(String text, FontMetrics fm, int maxWidth) {
+        List<String> lines = new ArrayList<>();
+        for (String paragraph : text.split("\n", -1)) {
+            StringBuilder line = new StringBuilder();
+            for (String word : paragraph.split(" ", -1)) {
+                String candidate = line.length() == 0 ? word : line + " " + word;
+                if (fm.stringWidth(candidate) <= maxWidth) {
+                    line.setLength(0);
+                    line.append(candidate);
+                    continue;
+                }
+                if (line.length() > 0) {
+                    lines.add(line.toString());
+                    line.setLength(0);
+                }
+                // A word wider than the bubble is broken wherever it runs out of room
+                int start = 0;
+                for (int i = 1; i <= word.length(); i++) {
+                    if (fm.stringWidth(word.substring(start, i)) > maxWidth && i - 1 > start) {
+                        lines.add(word.substring(start, i - 1));
+                        start = i - 1;
+                    }
+                }
+                line.append(word, start, word.length());
+            }
+            lines.add(line.toString());
+        }
+        return lines.toArray(new String[0]);
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return new Dimension(200, totalHeight());
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        int width = getWidth();
+        ensureLayout(layoutWidth());
+        Graphics2D g2d = (Graphics2D) g;
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        for (int i = firstRowAt(clip.y); i < rows.size() && tops[i] < clip.y + clip.height; i++) {
+            paintRow(g2d, rows.get(i), tops[i], width);
+        }
+    }
+
+    private int firstRowAt(int y) {
+        int lo = 0, hi = rows.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (tops[mid] <= y) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    private void paintRow(Graphics2D g2d, ChatPanel.ChatMessage row, int y, int width) {
+        int w = row.bubbleWidth;
+        int h = row.height - 2 * ROW_PAD;
+        int x = row.isSent ? width - ROW_PAD - SIDE_GAP - w : ROW_PAD + SIDE_GAP;
+        int top = y + ROW_PAD;
+
+        g2d.setColor(row.isSent ? ChatPanel.SENT_BUBBLE : ChatPanel.RECEIVED_BUBBLE);
+        g2d.fillRect(x, top, w, h);
+        g2d.setColor(row.isSent ? Theme.PRIMARY_HOVER : ChatPanel.BORDER_COLOR);
+        g2d.drawRect(x, top, w - 1, h - 1);
+        if (row == highlighted) {
+            g2d.setColor(HIGHLIGHT);
+            g2d.drawRect(x - 2, top - 2, w + 3, h + 3);
+            g2d.drawRect(x - 3, top - 3, w + 5, h + 5);
+        }
+
+        int textX = x + 1 + PAD_X;
+        int textY = top + 1 + PAD_Y;
+        if (!row.isSent) {
+            FontMetrics fm = getFontMetrics(SENDER_FONT);
+            g2d.setFont(SENDER_FONT);
+            g2d.setColor(Theme.PRIMARY_COLOR);
+            g2d.drawString(row.sender, textX, textY + fm.getAscent());
+            textY += fm.getHeight() + LINE_GAP;
+        }
+
+        FontMetrics fm = getFontMetrics(CONTENT_FONT);
+        g2d.setFont(CONTENT_FONT);
+        g2d.setColor(Theme.TEXT_COLOR);
+        for (String line : row.lines) {
+            g2d.drawString(line, textX, textY + fm.getAscent());
+            textY += fm.getHeight();
+        }
+        textY += LINE_GAP;
+
+        fm = getFontMetrics(TIME_FONT);
+        g2d.setFont(TIME_FONT);
+        g2d.setColor(Theme.SECONDARY_TEXT);
+        g2d.drawString(row.getFormattedTime(), textX, textY + fm.getAscent());
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return 16;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return true;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        // Fill a tall viewport so the background covers it while there are few messages
+        JViewport viewport = viewport();
+        return viewport != null && viewport.getHeight() > totalHeight();
+    }
+}
@@ -0,0 +1,213 @@
+package client;
+
+import model.Message;
+import model.Player;
+import model.Zobrist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The client's copy of the board: one seat per colour, held in primitive
+ * arrays, so a token always sits at its player's colour however the server
+ * orders a frame. STATE text is parsed in place without allocating, and
+ * listeners are told which seats changed, as a bit mask, only when something
+ * did. EDT only.
+ */
+class ClientGameModel {
+    static final int SEATS = Zobrist.SEATS;
+    private static final int MAX_POSITION = 57; // Last home-stretch square
+
+    /** Called after an update with bit (1 << seat) set for every seat that changed. */
+    interface Listener {
+        void seatsChanged(ClientGameModel model, int changed);
+    }
+
+    private final int[] ids = new int[SEATS];       // 0 = empty seat
+    private final int[] positions = new int[SEATS];
+    private final String[] initials = new String[SEATS];
+    private final int[] nextIds = new int[SEATS];   // Parse scratch, committed only if the frame is well formed
+    private final int[] nextPositions = new int[SEATS];
+    private final List<Listener> listeners = new ArrayList<>();
+    private Map<Integer, String> names = Collections.emptyMap();
+    private int turnSeat = -1;
+    private int cursor;         // Parse position in the frame text
+    private boolean malformed;
+
+    ClientGameModel() {
+        Arrays.fill(positions, -1);
+    }
+
+    void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Applies a STATE frame of "id=position:colour," entries; a frame without
+     * colours seats players in arrival order. Two players on one colour are not
+     * an error: the later one takes the lowest free seat, and since that changes
+     * the board's hash the frame's hash check asks for a keyframe. Returns false,
+     * changing nothing, if the text does not parse.
+     */
+    boolean applyState(Message frame) {
+        String text = frame.getContent();
+        Arrays.fill(nextIds, 0);
+        Arrays.fill(nextPositions, -1);
+        malformed = false;
+        cursor = 0;
+        int arrival = 0;
+        int n = text.length();
+        while (!malformed && skipSpaces(text) < n) {
+            if (text.charAt(cursor) == ',') {
+                cursor++;
+                continue;
+            }
+            int id = readInt(text);
+            expect(text, '=');
+            int pos = readInt(text);
+            int seat = arrival;
+            if (skipSpaces(text) < n && text.charAt(cursor) == ':') {
+                cursor++;
+                seat = readInt(text);
+            }
+            if (malformed || id <= 0 || seat < 0 || seat >= SEATS || pos < -1 || pos > MAX_POSITION) {
+                return false;
+            }
+            seat = freeSeat(seat);
+            if (seat < 0) return false; // More players than seats
+            nextIds[seat] = id;
+            nextPositions[seat] = pos;
+            arrival++;
+        }
+        if (malformed) return false;
+        commit(frame.getPlayerId());
+        return true;
+    }
+
+    /**
+     * Lockstep mode and replays: takes positions from a local GameState, seating
+     * each player by colour, or in the lowest free seat if the colour is taken.
+     */
+    void applyPlayers(Map<Integer, Player> players, int turnId) {
+        Arrays.fill(nextIds, 0);
+        Arrays.fill(nextPositions, -1);
+        for (Player p : players.values()) {
+            int seat = freeSeat(p.getColor() & (SEATS - 1));
+            if (seat < 0) break;
+            nextIds[seat] = p.getId();
+            nextPositions[seat] = p.getPosition();
+        }
+        commit(turnId);
+    }
+
+    /** New roster; seats whose initial changes are reported like a move. */
+    void setNames(Map<Integer, String> names) {
+        this.names = names;
+        int changed = 0;
+        for (int s = 0; s < SEATS; s++) {
+            if (ids[s] == 0) continue;
+            String initial = initialOf(ids[s]);
+            if (!initial.equals(initials[s])) {
+                initials[s] = initial;
+                changed |= 1 << s;
+            }
+        }
+        fire(changed);
+    }
+
+    // The wanted seat if nobody in the frame being built has it, else the lowest free one; -1 if full
+    private int freeSeat(int wanted) {
+        if (nextIds[wanted] == 0) return wanted;
+        for (int s = 0; s < SEATS; s++) {
+            if (nextIds[s] == 0) return s;
+        }
+        return -1;
+    }
+
+    private void commit(int turnId) {
+        int changed = 0;
+        for (int s = 0; s < SEATS; s++) {
+            if (ids[s] != nextIds[s]) {
+                ids[s] = nextIds[s];
+                initials[s] = ids[s] != 0 ? initialOf(ids[s]) : null;
+                changed |= 1 << s;
+            }
+            if (positions[s] != nextPositions[s]) {
+                positions[s] = nextPositions[s];
+                changed |= 1 << s;
+            }
+        }
+        turnSeat = seatOf(turnId);
+        fire(changed);
+    }
+
+    private void fire(int changed) {
+        if (changed == 0) return;
+        for (int i = 0; i < listeners.size(); i++) listeners.get(i).seatsChanged(this, changed);
+    }
+
+    private String initialOf(int id) {
+        String name = names.get(id);
+        return name == null || name.isEmpty() ? "?" : name.substring(0, 1).toUpperCase();
+    }
+
+    private int skipSpaces(String s) {
+        while (cursor < s.length() && s.charAt(cursor) == ' ') cursor++;
+        return cursor;
+    }
+
+    private void expect(String s, char c) {
+        if (skipSpaces(s) < s.length() && s.charAt(cursor) == c) {
+            cursor++;
+        } else {
+            malformed = true;
+        }
+    }
+
+    // Integer.parseInt without the substring; sets malformed instead of throwing
+    private int readInt(String s) {
+        int i = skipSpaces(s);
+        int n = s.length();
+        boolean negative = i < n && s.charAt(i) == '-';
+        if (negative) i++;
+        int start = i;
+        int value = 0;
+        for (char c; i < n && (c = s.charAt(i)) >= '0' && c <= '9' && i - start < 9; i++) {
+            value = value * 10 + (c - '0');
+        }
+        if (i == start || (i < n && Character.isDigit(s.charAt(i)))) malformed = true;
+        cursor = i;
+        return negative ? -value : value;
+    }
+
+    /** Zobrist hash of the seats and the player to move, comparable with Message.getStateHash. */
+    long hash() {
+        long h = 0;
+        for (int s = 0; s < SEATS; s++) {
+            if (ids[s] != 0) h ^= Zobrist.piece(s, positions[s]);
+        }
+        return turnSeat >= 0 ? h ^ Zobrist.turn(turnSeat) : h;
+    }
+
+    int seatOf(int id) {
+        if (id == 0) return -1;
+        for (int s = 0; s < SEATS; s++) {
+            if (ids[s] == id) return s;
+        }
+        return -1;
+    }
+
+    boolean isOccupied(int seat) { return ids[seat] != 0; }
+    int idAt(int seat) { return ids[seat]; }
+    int positionAt(int seat) { return positions[seat]; }
+    String initialAt(int seat) { return initials[seat]; }
+    int getTurnSeat() { return turnSeat; }
+
+    String nameOf(int id) {
+        String name = names.get(id);
+        return name != null ? name : "Player " + id;
+    }
+}
@@ -0,0 +1,68 @@
+package client;
+
+import model.GameState;
+import model.Message;
+import model.Player;
+
+import java.util.Map;
+
+/**
+ * Client-side replica of the room's GameState for lockstep mode. A STATE
+ * keyframe seeds it; after that every DICE event is replayed through the same
+ * GameState.movePlayer the server runs, so the board and the result text are
+ * computed locally. Returns null from apply whenever the replica can no longer
+ * be trusted (no keyframe yet, a missed event, or a checksum that disagrees),
+ * and the caller should then ask for a keyframe.
+ */
+class LockstepEngine {
+    private GameState state;
+    private long sequence;
+
+    /** Rebuilds the replica from the board a keyframe was just applied to. */
+    void restore(Message keyframe, ClientGameModel board) {
+        int n = 0;
+        for (int s = 0; s < ClientGameModel.SEATS; s++) {
+            if (board.isOccupied(s)) n++;
+        }
+        int[] ids = new int[n];
+        String[] names = new String[n];
+        int[] colors = new int[n];
+        int[] pos = new int[n];
+        int i = 0;
+        for (int s = 0; s < ClientGameModel.SEATS; s++) {
+            if (!board.isOccupied(s)) continue;
+            ids[i] = board.idAt(s);
+            names[i] = board.nameOf(ids[i]); // Owners for the result text
+            colors[i] = s;
+            pos[i] = board.positionAt(s);
+            i++;
+        }
+        state = GameState.fromSnapshot(ids, names, colors, pos, keyframe.getPlayerId());
+        sequence = keyframe.getSequence();
+    }
+
+    /** Replays one DICE event and returns its result text, or null if the replica is out of sync. */
+    String apply(Message dice) {
+        if (state == null) return null;
+        if (dice.getSequence() <= sequence) return ""; // Already covered by the keyframe
+        if (dice.getSequence() != sequence + 1 || dice.getPlayerId() != state.getCurrentTurn()) {
+            state = null;
+            return null;
+        }
+        String result = state.movePlayer(dice.getPlayerId(), Integer.parseInt(dice.getContent()));
+        sequence = dice.getSequence();
+        if (dice.getStateHash() != 0 && dice.getStateHash() != state.getHash()) {
+            state = null;
+            return null;
+        }
+        return result;
+    }
+
+    Map<Integer, Player> getPlayers() {
+        return state.getPlayers();
+    }
+
+    int getCurrentTurn() {
+        return state.getCurrentTurn();
+    }
+}
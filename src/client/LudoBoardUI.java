@@ -1,51 +1,74 @@
 package client;
 
 import model.Message;
-import model.Player;
+import util.Log;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.awt.event.ActionEvent;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.nio.file.Path;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.LongSupplier;
 
 public class LudoBoardUI extends JFrame {
+    private static final boolean SHOW_PERF = Boolean.getBoolean("ludo.perfOverlay"); // Overlay on from the start
+    private static final long RESYNC_TIMEOUT_MS = 3000; // An unanswered keyframe or roster request is sent again after this
+    private static final int RESYNC_RETRY_MS = 1000;    // Wait before asking again when the server throttled one
+    
     private JLabel infoLabel;
     private JButton rollDiceButton;
+    private OptimisticRoll roll;
+    private long rollSequence; // Of the last ROLL sent; the server echoes it in its answer
     private JButton chatToggleButton;
-    private ObjectOutputStream out;
+    private JButton leaderboardButton;
+    private volatile ObjectOutputStream out; // Null until connected
     private String playerName;
+    private volatile int playerId;
+    private volatile Map<Integer, String> roster = Collections.emptyMap(); // id -> display name
+    private Map<Integer, String> rosterStatuses = new HashMap<>(); // EDT only; handed to the chat when it is built
+    private long rosterVersion = -1;   // EDT only
+    private boolean resyncPending;     // EDT only
+    private boolean keyframePending;   // EDT only
+    private long rosterAskedAt;        // EDT only; when the pending roster was requested
+    private long keyframeAskedAt;      // EDT only; when the pending keyframe was requested
+    private final ClientGameModel board = new ClientGameModel(); // EDT only
     private BoardPanel boardPanel;
-    private ChatPanel chatPanel;
+    private final LockstepEngine lockstep = new LockstepEngine(); // EDT only
+    private ChatPanel chatPanel; // EDT only; built on first open
     private JSplitPane mainSplitPane;
-    private boolean chatVisible = true;
-    
-    // Modern Blue Theme Colors
-    private static final Color PRIMARY_COLOR = new Color(0, 123, 255);
-    private static final Color PRIMARY_HOVER = new Color(0, 105, 217);
-    private static final Color DARK_BG = new Color(18, 18, 28);
-    private static final Color PANEL_BG = new Color(25, 30, 48);
-    private static final Color TEXT_COLOR = new Color(255, 255, 255);
-    private static final Color ACCENT_COLOR = new Color(64, 169, 255);
-    private static final Color SUCCESS_COLOR = new Color(34, 197, 94);
+    private boolean chatVisible = false;
+    private boolean chatUnread;   // EDT only; a message arrived while the chat was closed
+    private PerfOverlay perfOverlay;
 
-    public LudoBoardUI(String playerName, ObjectOutputStream out) {
+    /**
+     * Shows the window with the board only; the chat is built the first time it
+     * is opened. Until connected() hands over the server stream, anything that
+     * talks to the server stays disabled. Call on the EDT.
+     */
+    public LudoBoardUI(String playerName) {
         this.playerName = playerName;
-        this.out = out;
 
         setTitle("🎲 Ludo Game - " + playerName);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLayout(new BorderLayout());
-        getContentPane().setBackground(DARK_BG);
+        getContentPane().setBackground(Theme.DARK_BG);
 
         initializeComponents();
+        installPerfOverlay();
 
         setSize(1300, 800);
         setLocationRelativeTo(null);
         setMinimumSize(new Dimension(1100, 700));
         setVisible(true);
+        if (SHOW_PERF) togglePerfOverlay();
     }
     
     private void initializeComponents() {
@@ -62,57 +85,127 @@ public class LudoBoardUI extends JFrame {
         add(bottomPanel, BorderLayout.SOUTH);
     }
     
+    // F3 shows or hides the overlay over the board's corner, Shift+F3 saves its samples
+    private void installPerfOverlay() {
+        perfOverlay = new PerfOverlay();
+        boardPanel.setPaintObserver(perfOverlay::paintTimed);
+        getLayeredPane().add(perfOverlay, JLayeredPane.PALETTE_LAYER);
+        mainSplitPane.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) { placePerfOverlay(); }
+            @Override
+            public void componentMoved(ComponentEvent e) { placePerfOverlay(); }
+        });
+        
+        InputMap keys = getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
+        ActionMap actions = getRootPane().getActionMap();
+        keys.put(KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0), "togglePerf");
+        keys.put(KeyStroke.getKeyStroke(KeyEvent.VK_F3, InputEvent.SHIFT_DOWN_MASK), "exportPerf");
+        actions.put("togglePerf", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) { togglePerfOverlay(); }
+        });
+        actions.put("exportPerf", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) { exportPerf(); }
+        });
+    }
+    
+    private void togglePerfOverlay() {
+        perfOverlay.toggle();
+        placePerfOverlay();
+    }
+    
+    private void placePerfOverlay() {
+        Point at = SwingUtilities.convertPoint(mainSplitPane, 12, 12, getLayeredPane());
+        Dimension size = perfOverlay.getPreferredSize();
+        perfOverlay.setBounds(at.x, at.y, size.width, size.height);
+    }
+    
+    private void exportPerf() {
+        try {
+            Path file = perfOverlay.export();
+            showMessage("Performance samples saved to " + file.getFileName());
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Error saving performance samples: " + e.getMessage());
+        }
+    }
+    
+    /** Count of messages received from the server, for the overlay's inbound rate. */
+    public void setInboundCounter(LongSupplier received) {
+        perfOverlay.setInboundCounter(received);
+    }
+    
+    /** Listener thread: the server echoed one of the overlay's pings. */
+    public void pongReceived(Message pong) {
+        perfOverlay.pongReceived(pong);
+    }
+    
     private JPanel createTopPanel() {
         JPanel panel = new JPanel(new BorderLayout());
-        panel.setBackground(PANEL_BG);
+        panel.setBackground(Theme.PANEL_BG);
         panel.setBorder(new EmptyBorder(15, 20, 15, 20));
         
         // Left side - Title
         JLabel titleLabel = new JLabel("🎲 Ludo Master");
-        titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 24));
-        titleLabel.setForeground(TEXT_COLOR);
+        titleLabel.setFont(Theme.font(Font.BOLD, 24));
+        titleLabel.setForeground(Theme.TEXT_COLOR);
         panel.add(titleLabel, BorderLayout.WEST);
         
         // Center - Info label
-        infoLabel = new JLabel("Waiting for game to start...", SwingConstants.CENTER);
-        infoLabel.setFont(new Font("Segoe UI", Font.BOLD, 16));
-        infoLabel.setForeground(ACCENT_COLOR);
+        infoLabel = new JLabel("Connecting to server...", SwingConstants.CENTER);
+        infoLabel.setFont(Theme.font(Font.BOLD, 16));
+        infoLabel.setForeground(Theme.ACCENT_COLOR);
         panel.add(infoLabel, BorderLayout.CENTER);
         
         // Right side - Player name and chat toggle
         JPanel rightPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 15, 0));
-        rightPanel.setBackground(PANEL_BG);
+        rightPanel.setBackground(Theme.PANEL_BG);
         
         JLabel playerLabel = new JLabel("Player: " + playerName);
-        playerLabel.setFont(new Font("Segoe UI", Font.PLAIN, 16));
-        playerLabel.setForeground(TEXT_COLOR);
+        playerLabel.setFont(Theme.font(Font.PLAIN, 16));
+        playerLabel.setForeground(Theme.TEXT_COLOR);
         rightPanel.add(playerLabel);
         
         // Chat toggle button
-        chatToggleButton = new JButton("Close Chat");
-        chatToggleButton.setFont(new Font("Segoe UI", Font.BOLD, 12));
-        chatToggleButton.setBackground(PRIMARY_COLOR);
+        chatToggleButton = new JButton("Open Chat");
+        chatToggleButton.setFont(Theme.font(Font.BOLD, 12));
+        chatToggleButton.setBackground(Theme.PRIMARY_COLOR);
         chatToggleButton.setForeground(Color.WHITE);
         chatToggleButton.setFocusPainted(false);
         chatToggleButton.setBorderPainted(false);
         chatToggleButton.setPreferredSize(new Dimension(110, 35));
         chatToggleButton.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        chatToggleButton.setEnabled(false);
         
         chatToggleButton.addMouseListener(new java.awt.event.MouseAdapter() {
             @Override
             public void mouseEntered(java.awt.event.MouseEvent evt) {
-                chatToggleButton.setBackground(PRIMARY_HOVER);
+                chatToggleButton.setBackground(Theme.PRIMARY_HOVER);
             }
             
             @Override
             public void mouseExited(java.awt.event.MouseEvent evt) {
-                chatToggleButton.setBackground(PRIMARY_COLOR);
+                chatToggleButton.setBackground(Theme.PRIMARY_COLOR);
             }
         });
         
         chatToggleButton.addActionListener(e -> toggleChat());
         rightPanel.add(chatToggleButton);
         
+        // Leaderboard button
+        leaderboardButton = new JButton("🏆 Ranks");
+        leaderboardButton.setFont(Theme.font(Font.BOLD, 12));
+        leaderboardButton.setBackground(Theme.PRIMARY_COLOR);
+        leaderboardButton.setForeground(Color.WHITE);
+        leaderboardButton.setFocusPainted(false);
+        leaderboardButton.setBorderPainted(false);
+        leaderboardButton.setPreferredSize(new Dimension(110, 35));
+        leaderboardButton.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        leaderboardButton.setEnabled(false);
+        leaderboardButton.addActionListener(e -> requestLeaderboard());
+        rightPanel.add(leaderboardButton);
+        
         panel.add(rightPanel, BorderLayout.EAST);
         
         return panel;
@@ -121,35 +214,32 @@ public class LudoBoardUI extends JFrame {
     private JSplitPane createMainSplitPane() {
         // Left side - Game board
         JPanel boardContainer = new JPanel(new BorderLayout());
-        boardContainer.setBackground(DARK_BG);
+        boardContainer.setBackground(Theme.DARK_BG);
         boardContainer.setBorder(new EmptyBorder(10, 10, 10, 10));
         
-        boardPanel = new BoardPanel();
+        boardPanel = new BoardPanel(board);
         boardContainer.add(boardPanel, BorderLayout.CENTER);
         
-        // Right side - Chat panel
-        chatPanel = new ChatPanel(playerName, out);
-        
-        // Create split pane
-        JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, boardContainer, chatPanel);
-        splitPane.setDividerLocation(680);
+        // Right side - Chat panel, added when it is first opened
+        JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, boardContainer, null);
+        splitPane.setDividerLocation(1.0);
         splitPane.setDividerSize(3);
         splitPane.setResizeWeight(0.65);
         splitPane.setBorder(null);
-        splitPane.setBackground(DARK_BG);
+        splitPane.setBackground(Theme.DARK_BG);
         
         return splitPane;
     }
     
     private JPanel createBottomPanel() {
         JPanel panel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 10));
-        panel.setBackground(PANEL_BG);
+        panel.setBackground(Theme.PANEL_BG);
         panel.setBorder(new EmptyBorder(10, 20, 15, 20));
         
         // Dice roll button
         rollDiceButton = new JButton("🎲 Roll Dice");
-        rollDiceButton.setFont(new Font("Segoe UI", Font.BOLD, 18));
-        rollDiceButton.setBackground(PRIMARY_COLOR);
+        rollDiceButton.setFont(Theme.font(Font.BOLD, 18));
+        rollDiceButton.setBackground(Theme.PRIMARY_COLOR);
         rollDiceButton.setForeground(Color.WHITE);
         rollDiceButton.setFocusPainted(false);
         rollDiceButton.setBorderPainted(false);
@@ -161,16 +251,19 @@ public class LudoBoardUI extends JFrame {
             @Override
             public void mouseEntered(java.awt.event.MouseEvent evt) {
                 if (rollDiceButton.isEnabled()) {
-                    rollDiceButton.setBackground(PRIMARY_HOVER);
+                    rollDiceButton.setBackground(Theme.PRIMARY_HOVER);
                 }
             }
             
             @Override
             public void mouseExited(java.awt.event.MouseEvent evt) {
-                rollDiceButton.setBackground(PRIMARY_COLOR);
+                rollDiceButton.setBackground(Theme.PRIMARY_COLOR);
             }
         });
         
+        // The server may still take the roll, so the button waits for YOUR_TURN
+        roll = new OptimisticRoll(rollDiceButton,
+                () -> showMessage("No answer from the server yet. Waiting for your turn..."));
         rollDiceButton.addActionListener((ActionEvent e) -> rollDice());
         panel.add(rollDiceButton);
         
@@ -181,6 +274,8 @@ public class LudoBoardUI extends JFrame {
         chatVisible = !chatVisible;
         
         if (chatVisible) {
+            if (chatPanel == null) buildChat();
+            chatUnread = false;
             mainSplitPane.setRightComponent(chatPanel);
             mainSplitPane.setDividerLocation(680);
             chatToggleButton.setText("Close Chat");
@@ -194,87 +289,277 @@ public class LudoBoardUI extends JFrame {
         mainSplitPane.repaint();
     }
 
+    // The chat's history is requested as it is built, so nothing sent before this is lost
+    private void buildChat() {
+        long start = System.nanoTime();
+        chatPanel = new ChatPanel(playerName, out);
+        chatPanel.setUserId(playerId);
+        if (!roster.isEmpty()) {
+            int[] ids = new int[roster.size()];
+            String[] users = new String[ids.length];
+            String[] statuses = new String[ids.length];
+            int i = 0;
+            for (Map.Entry<Integer, String> e : roster.entrySet()) {
+                ids[i] = e.getKey();
+                users[i] = e.getValue();
+                statuses[i++] = rosterStatuses.get(e.getKey());
+            }
+            chatPanel.updateUserList(ids, users, statuses);
+        }
+        Log.info("CLIENT", "Chat built on first open in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+    
+    /** Hands over the server stream once JOIN has been sent; enables what needs the server. */
+    public void connected(ObjectOutputStream out) {
+        this.out = out;
+        UiBatcher.onEdt(() -> {
+            perfOverlay.setOutput(out);
+            chatToggleButton.setEnabled(true);
+            leaderboardButton.setEnabled(true);
+            if (infoLabel.getText().startsWith("Connecting")) showMessage("Waiting for game to start...");
+        });
+    }
+
+    // The die spins from the click; rollAnswered or a timeout settles it
     private void rollDice() {
+        enableRoll(false);
+        Message request = new Message(Message.ROLL, "", playerId);
+        request.setSequence(++rollSequence);
+        roll.start(rollSequence);
         try {
-            out.writeObject(new Message(Message.ROLL, "", playerName));
+            out.writeObject(request);
             out.flush();
-            rollDiceButton.setEnabled(false);
             showMessage("Rolling dice...");
         } catch (IOException e) {
+            roll.rollback();
             JOptionPane.showMessageDialog(this, "Error sending roll: " + e.getMessage());
         }
     }
 
-    public void updatePositionsFromState(String stateText) {
-        Map<String, Integer> newPos = new HashMap<>();
-        int[] colors = new int[4];
-        
+    /**
+     * The server's answer to our ROLL: the face to land on, or a rejection that
+     * undoes the click. Answers to a roll that already timed out are dropped;
+     * the button then comes back with the next YOUR_TURN.
+     */
+    public void rollAnswered(Message reply) {
+        if (!roll.answers(reply.getSequence())) return;
+        if (!Message.REJECTED.equals(reply.getContent())) {
+            roll.settle(Integer.parseInt(reply.getContent()));
+        } else {
+            roll.rollback();
+            enableRoll(true);
+            showMessage("The server did not take that roll. Try again.");
+        }
+    }
+
+    private void requestLeaderboard() {
         try {
-            String[] parts = stateText.split(",");
-            int idx = 0;
-            for (String p : parts) {
-                if (p.contains("=")) {
-                    String[] kv = p.trim().split("=");
-                    String name = kv[0];
-                    int pos = Integer.parseInt(kv[1]);
-                    newPos.put(name, pos);
-                    colors[idx] = idx; // Assign colors in order
-                    idx++;
-                }
+            out.writeObject(new Message(Message.LEADERBOARD, "", playerId));
+            out.flush();
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Error requesting leaderboard: " + e.getMessage());
+        }
+    }
+
+    public void showLeaderboard(String[] rows, String summary) {
+        // Always deferred: a modal dialog opened mid-batch would hold back the rest of it
+        SwingUtilities.invokeLater(() -> {
+            StringBuilder sb = new StringBuilder();
+            if (rows == null || rows.length == 0) {
+                sb.append("No rated games yet.");
+            } else {
+                for (String row : rows) sb.append(row).append("\n");
             }
-            boardPanel.updatePositions(newPos, colors);
-        } catch (Exception e) {
-            System.err.println("Error parsing state: " + e.getMessage());
+            if (summary != null && !summary.isEmpty()) {
+                sb.append("\n").append(summary);
+            }
+            JOptionPane.showMessageDialog(this, sb.toString(), "🏆 Leaderboard", JOptionPane.PLAIN_MESSAGE);
+        });
+    }
+
+    public void updatePositionsFromState(Message frame) {
+        if (Message.REJECTED.equals(frame.getContent())) {
+            if (keyframePending) retryLater(this::requestKeyframe);
+            return;
+        }
+        if (!board.applyState(frame)) {
+            System.err.println("Error parsing state: " + frame.getContent());
+            return;
+        }
+        verifyHash(frame);
+        lockstep.restore(frame, board);
+    }
+    
+    // Recomputes the frame's Zobrist hash from what we parsed; on a mismatch asks once
+    // for a keyframe, and asks again only after a frame has matched or the request timed out
+    private void verifyHash(Message frame) {
+        if (frame.getStateHash() == 0) return; // Server without hashing
+        if (board.hash() == frame.getStateHash()) {
+            keyframePending = false;
+            return;
+        }
+        if (keyframePending) {
+            if (overdue(keyframeAskedAt)) requestKeyframe();
+            return;
+        }
+        keyframePending = true;
+        System.err.println("Board out of sync with the server; requesting a keyframe");
+        requestKeyframe();
+    }
+    
+    /** Lockstep mode: replays the server's roll locally instead of waiting for a STATE frame. */
+    public void applyDice(Message dice) {
+        if (dice.getPlayerId() == playerId) roll.settle(Integer.parseInt(dice.getContent()));
+        String result = lockstep.apply(dice);
+        if (result == null) {
+            if (keyframePending) {
+                if (overdue(keyframeAskedAt)) requestKeyframe();
+                return;
+            }
+            keyframePending = true;
+            System.err.println("Lockstep replica out of sync; requesting a keyframe");
+            requestKeyframe();
+            return;
+        }
+        if (result.isEmpty()) return;
+        showMessage(result);
+        board.applyPlayers(lockstep.getPlayers(), lockstep.getCurrentTurn());
+    }
+    
+    private void requestKeyframe() {
+        keyframeAskedAt = System.currentTimeMillis();
+        try {
+            out.writeObject(new Message(Message.STATE, "", playerId));
+            out.flush();
+        } catch (IOException e) {
+            showMessage("Failed to resync board: " + e.getMessage());
         }
     }
 
     public void showMessage(String msg) {
-        SwingUtilities.invokeLater(() -> {
+        UiBatcher.onEdt(() -> {
             infoLabel.setText(msg);
             
             // Change color based on message type
             if (msg.contains("Your turn")) {
-                infoLabel.setForeground(SUCCESS_COLOR);
+                infoLabel.setForeground(Theme.SUCCESS_COLOR);
             } else if (msg.contains("Need 6") || msg.contains("Need exact")) {
-                infoLabel.setForeground(new Color(239, 68, 68));
+                infoLabel.setForeground(Theme.ERROR_COLOR);
             } else if (msg.contains("Roll again")) {
-                infoLabel.setForeground(new Color(250, 204, 21));
+                infoLabel.setForeground(Theme.WARNING_COLOR);
             } else {
-                infoLabel.setForeground(ACCENT_COLOR);
+                infoLabel.setForeground(Theme.ACCENT_COLOR);
             }
         });
     }
 
     public void enableRoll(boolean enable) {
-        SwingUtilities.invokeLater(() -> {
+        UiBatcher.onEdt(() -> {
             rollDiceButton.setEnabled(enable);
             if (enable) {
-                rollDiceButton.setBackground(PRIMARY_COLOR);
+                roll.reset();
+                rollDiceButton.setBackground(Theme.PRIMARY_COLOR);
             } else {
-                rollDiceButton.setBackground(new Color(100, 100, 120));
+                rollDiceButton.setBackground(Theme.DISABLED_COLOR);
             }
         });
     }
     
+    // Chat traffic arrives on the EDT; before the chat is built it only marks the button,
+    // and the history fetched when it opens covers what was missed
     public void receiveChatMessage(Message msg) {
-        chatPanel.receiveMessage(msg);
+        if (chatPanel != null) chatPanel.receiveMessage(msg);
+        if (!chatVisible && !chatUnread) {
+            chatUnread = true;
+            chatToggleButton.setText("Open Chat •");
+        }
     }
     
-    public void updateUserList(String[] users) {
-        chatPanel.updateUserList(users);
+    public void receiveTyping(Message msg) {
+        if (chatPanel != null) chatPanel.receiveTyping(msg);
     }
     
-    public void updatePlayers(Map<String, Player> players) {
-        Map<String, Integer> positions = new HashMap<>();
-        int[] colors = new int[players.size()];
-        
-        int index = 0;
-        for (Player player : players.values()) {
-            positions.put(player.getName(), player.getPosition());
-            colors[index] = player.getColor();
-            index++;
+    public void receiveChatHistory(Message msg) {
+        if (chatPanel != null) chatPanel.receiveHistory(msg);
+    }
+    
+    /** Called once the server has assigned our player id. */
+    public void setPlayerId(int playerId) {
+        this.playerId = playerId;
+        if (chatPanel != null) chatPanel.setUserId(playerId);
+    }
+    
+    /** Applies a full roster snapshot, sent on first subscribe or after a resync request. */
+    public void updateUserList(Message snapshot) {
+        if (Message.REJECTED.equals(snapshot.getContent())) {
+            if (resyncPending) retryLater(this::requestUserList);
+            return;
         }
-        
-        boardPanel.updatePositions(positions, colors);
+        int[] ids = snapshot.getUserIds();
+        String[] users = snapshot.getUserList();
+        Map<Integer, String> names = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            names.put(ids[i], users[i]);
+        }
+        roster = names;
+        board.setNames(names);
+        rosterVersion = snapshot.getVersion();
+        resyncPending = false;
+        String[] statuses = snapshot.getStatuses();
+        rosterStatuses = new HashMap<>();
+        for (int i = 0; i < ids.length && statuses != null; i++) rosterStatuses.put(ids[i], statuses[i]);
+        if (chatPanel != null) chatPanel.updateUserList(ids, users, statuses);
+    }
+
+    /** Applies a PRESENCE delta, or asks for the full roster if a version was missed. */
+    public void applyPresence(Message delta) {
+        long version = delta.getVersion();
+        if (version <= rosterVersion) return;
+        if (resyncPending) {
+            if (overdue(rosterAskedAt)) requestUserList(); // Otherwise the snapshot will cover it
+            return;
+        }
+        if (rosterVersion < 0 || version != rosterVersion + 1) {
+            resyncPending = true;
+            requestUserList();
+            return;
+        }
+        rosterVersion = version;
+
+        int id = delta.getUserIds()[0];
+        String name = delta.getUserList()[0];
+        Map<Integer, String> names = new HashMap<>(roster);
+        if (Message.LEFT.equals(delta.getContent())) {
+            names.remove(id);
+            rosterStatuses.remove(id);
+        } else {
+            names.put(id, name);
+            rosterStatuses.put(id, delta.getStatuses()[0]);
+        }
+        roster = names;
+        board.setNames(names);
+        if (chatPanel != null) chatPanel.applyPresence(delta.getContent(), id, name, delta.getStatuses()[0]);
+    }
+
+    private void requestUserList() {
+        rosterAskedAt = System.currentTimeMillis();
+        try {
+            out.writeObject(new Message(Message.USER_LIST, "", playerId));
+            out.flush();
+        } catch (IOException e) {
+            showMessage("Failed to resync players: " + e.getMessage());
+        }
+    }
+
+    private static boolean overdue(long askedAt) {
+        return System.currentTimeMillis() - askedAt >= RESYNC_TIMEOUT_MS;
     }
+
+    // The server throttled a resync request; ask again once its budget has refilled
+    private void retryLater(Runnable request) {
+        Timer retry = new Timer(RESYNC_RETRY_MS, e -> request.run());
+        retry.setRepeats(false);
+        retry.start();
+    }
+
 }
\ No newline at end of file
@@ -2,66 +2,80 @@ package client;
 
 import model.Message;
 import util.Constants;
+import util.Log;
 
+import javax.swing.*;
 import java.io.*;
 import java.net.*;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+/**
+ * Client entry point. The connection is opened on a background thread as soon
+ * as the process starts, so the socket and stream handshake overlap the name
+ * prompt and the window being built on the EDT; JOIN goes out once both are
+ * done. Startup timings are logged.
+ */
 public class LudoClient {
     public static void main(String[] args) {
-        Socket socket = null;
-        ObjectOutputStream out = null;
-        ObjectInputStream in = null;
-        Scanner sc = null;
+        long launched = System.nanoTime();
+        CompletableFuture<Connection> connecting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return new Connection();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
 
-        try {
-            socket = new Socket(Constants.HOST, Constants.SERVER_PORT);
-
-            // Create streams in correct order
-            out = new ObjectOutputStream(socket.getOutputStream());
-            out.flush();
-            in = new ObjectInputStream(socket.getInputStream());
-            sc = new Scanner(System.in);
+        // Starts the EDT and loads the look and feel and fonts while the name is typed
+        SwingUtilities.invokeLater(Theme::preload);
 
+        try {
+            Scanner sc = new Scanner(System.in);
             System.out.print("Enter your player name: ");
             String name = sc.nextLine();
 
+            // Launch UI while the connection finishes
+            long named = System.nanoTime();
+            LudoBoardUI[] built = new LudoBoardUI[1];
+            SwingUtilities.invokeAndWait(() -> built[0] = new LudoBoardUI(name));
+            LudoBoardUI ui = built[0];
+            long shown = System.nanoTime();
+
+            Connection conn;
+            try {
+                conn = connecting.join();
+            } catch (CompletionException e) {
+                String reason = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+                System.err.println("Connection error: " + reason);
+                ui.showMessage("Could not connect to the server: " + reason);
+                return;
+            }
+            ObjectOutputStream out = conn.out;
+            ObjectInputStream in = conn.in;
+
             // Send join message
             out.writeObject(new Message("JOIN", "", name));
             out.flush();
+            ui.connected(out);
+            Log.info("CLIENT", "Window shown {} ms after the name was entered; connected {} ms after launch",
+                    (shown - named) / 1_000_000, (conn.ready - launched) / 1_000_000);
+            Log.info("CLIENT", "Ready to play {} ms after the name was entered",
+                    (System.nanoTime() - named) / 1_000_000);
 
-            // Launch UI
-            LudoBoardUI ui = new LudoBoardUI(name, out);
-
-            // Thread to listen to server
-            ObjectInputStream finalIn = in;
+            // Thread to listen to server; messages reach the UI in per-frame batches
+            UiBatcher batcher = new UiBatcher(msg -> dispatch(ui, msg));
+            ui.setInboundCounter(batcher::getReceived);
             new Thread(() -> {
                 try {
                     while (true) {
-                        Message msg = (Message) finalIn.readObject();
-                        String msgType = msg.getType();
-                        
-                        switch (msgType) {
-                            case "INFO":
-                                ui.showMessage(msg.getContent());
-                                break;
-                            case "STATE":
-                                ui.updatePositionsFromState(msg.getContent());
-                                break;
-                            case "YOUR_TURN":
-                                ui.showMessage("Your turn! Click 🎲 Roll Dice");
-                                ui.enableRoll(true);
-                                break;
-                            case "MOVE":
-                                ui.showMessage(msg.getContent());
-                                break;
-                            case Message.PUBLIC_CHAT:
-                            case Message.PRIVATE_CHAT:
-                                ui.receiveChatMessage(msg);
-                                break;
-                            case Message.USER_LIST:
-                                ui.updateUserList(msg.getUserList());
-                                break;
+                        Message msg = (Message) in.readObject();
+                        // Timed here, before the EDT queue, so the RTT is the network's alone
+                        if (Message.PING.equals(msg.getType())) {
+                            ui.pongReceived(msg);
+                        } else {
+                            batcher.post(msg);
                         }
                     }
                 } catch (Exception e) {
@@ -75,4 +89,68 @@ public class LudoClient {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    /** The socket and its object streams, opened off the main thread. */
+    private static final class Connection {
+        final ObjectOutputStream out;
+        final ObjectInputStream in;
+        final long ready; // nanoTime once both streams were open
+
+        Connection() throws IOException {
+            Socket socket = new Socket(Constants.HOST, Constants.SERVER_PORT);
+            // Create streams in correct order
+            out = new ObjectOutputStream(socket.getOutputStream());
+            out.flush();
+            in = new ObjectInputStream(socket.getInputStream());
+            ready = System.nanoTime();
+        }
+    }
+
+    // Runs on the EDT
+    private static void dispatch(LudoBoardUI ui, Message msg) {
+        switch (msg.getType()) {
+            case "INFO":
+                ui.showMessage(msg.getContent());
+                break;
+            case "STATE":
+                ui.updatePositionsFromState(msg);
+                break;
+            case Message.DICE:
+                ui.applyDice(msg);
+                break;
+            case Message.ROLL:
+                ui.rollAnswered(msg);
+                break;
+            case "YOUR_TURN":
+                ui.showMessage("Your turn! Click 🎲 Roll Dice");
+                ui.enableRoll(true);
+                break;
+            case "MOVE":
+                ui.showMessage(msg.getContent());
+                break;
+            case Message.PUBLIC_CHAT:
+            case Message.PRIVATE_CHAT:
+            case Message.LOBBY_CHAT:
+                ui.receiveChatMessage(msg);
+                break;
+            case Message.WELCOME:
+                ui.setPlayerId(msg.getPlayerId());
+                break;
+            case Message.USER_LIST:
+                ui.updateUserList(msg);
+                break;
+            case Message.TYPING:
+                ui.receiveTyping(msg);
+                break;
+            case Message.PRESENCE:
+                ui.applyPresence(msg);
+                break;
+            case Message.HISTORY:
+                ui.receiveChatHistory(msg);
+                break;
+            case Message.LEADERBOARD:
+                ui.showLeaderboard(msg.getUserList(), msg.getContent());
+                break;
+        }
+    }
+}
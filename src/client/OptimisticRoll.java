@@ -0,0 +1,111 @@
+package client;
+
+import util.Log;
+
+import javax.swing.*;
+
+/**
+ * The roll button's side of a roll. The die starts tumbling on the click
+ * instead of after the server's round trip; the server's answer (a ROLL reply,
+ * or a lockstep DICE event) lands it on the rolled face, and a rejection, a
+ * failed send or no answer within TIMEOUT_MS puts the button's label back as
+ * it was before the click. Each roll carries a sequence number that the
+ * server echoes, so an answer to a roll that has already timed out is told
+ * apart from one to the roll in flight. Click-to-face time is what the player
+ * perceives as the roll's latency, so it is recorded for every settled roll.
+ * Enabling the button stays with the caller. EDT only.
+ */
+class OptimisticRoll {
+    private static final String[] FACES = {"⚀", "⚁", "⚂", "⚃", "⚄", "⚅"};
+    private static final int SPIN_MS = 70;
+    private static final int TIMEOUT_MS = 3000;
+    private static final int FACE_HOLD_MS = 800; // A landed face stays up at least this long
+
+    private final JButton button;
+    private final String idleText;
+    private final Timer spinner;
+    private final Timer timeout;
+    private final Timer faceHold;
+    private long clickNanos; // 0 while no roll is in flight
+    private long sequence;   // Of the roll in flight
+    private int spinFace;
+
+    private long rolls;
+    private long lastNanos;
+    private long totalNanos;
+    private long maxNanos;
+
+    /** onTimeout runs when the server never answered, after the label is restored. */
+    OptimisticRoll(JButton button, Runnable onTimeout) {
+        this.button = button;
+        this.idleText = button.getText();
+        spinner = new Timer(SPIN_MS, e -> button.setText(FACES[spinFace = (spinFace + 1) % 6] + " Rolling..."));
+        timeout = new Timer(TIMEOUT_MS, e -> {
+            if (rollback()) onTimeout.run();
+        });
+        timeout.setRepeats(false);
+        faceHold = new Timer(FACE_HOLD_MS, e -> {
+            if (!inFlight() && button.isEnabled()) button.setText(idleText);
+        });
+        faceHold.setRepeats(false);
+    }
+
+    /** Called on the click, before the ROLL carrying {@code sequence} is sent. */
+    void start(long sequence) {
+        this.sequence = sequence;
+        clickNanos = System.nanoTime();
+        faceHold.stop();
+        button.setText(FACES[spinFace] + " Rolling...");
+        spinner.start();
+        timeout.restart();
+    }
+
+    boolean inFlight() {
+        return clickNanos != 0;
+    }
+
+    /** True if a ROLL reply with this sequence is the answer to the roll in flight. */
+    boolean answers(long sequence) {
+        return inFlight() && sequence == this.sequence;
+    }
+
+    /** Lands the die on the server's face; returns false if no roll of ours was in flight. */
+    boolean settle(int face) {
+        if (!inFlight() || face < 1 || face > 6) return false;
+        long took = System.nanoTime() - clickNanos;
+        stop();
+        button.setText(FACES[face - 1] + " Rolled " + face);
+        faceHold.restart();
+        rolls++;
+        lastNanos = took;
+        totalNanos += took;
+        maxNanos = Math.max(maxNanos, took);
+        Log.info("CLIENT", "Roll shown {} ms after the click (mean {} ms over {} rolls)",
+                took / 1_000_000, totalNanos / rolls / 1_000_000, rolls);
+        return true;
+    }
+
+    /** Undoes the click's label and timers; returns false if nothing was in flight. */
+    boolean rollback() {
+        if (!inFlight()) return false;
+        stop();
+        button.setText(idleText);
+        return true;
+    }
+
+    /** Back to the idle label, unless a roll is spinning or a face has only just landed. */
+    void reset() {
+        if (!inFlight() && !faceHold.isRunning()) button.setText(idleText);
+    }
+
+    private void stop() {
+        clickNanos = 0;
+        spinner.stop();
+        timeout.stop();
+    }
+
+    long getRolls() { return rolls; }
+    long getLastNanos() { return lastNanos; }
+    long getMeanNanos() { return rolls == 0 ? 0 : totalNanos / rolls; }
+    long getMaxNanos() { return maxNanos; }
+}
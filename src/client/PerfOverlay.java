@@ -0,0 +1,240 @@
+package client;
+
+import model.Message;
+import util.Log;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Tells a slow renderer, a blocked EDT and a slow network apart. While shown
+ * it collects, per second: board frames painted and their paint time, EDT
+ * queue delay (a probe posted with invokeLater every PROBE_MS records how long
+ * it waited to run), messages received from the server, and the round trip of
+ * a PING the server echoes back. The pong is timed on the listener thread, so
+ * EDT delay is not counted twice. The last WINDOW_SECONDS samples are kept
+ * and can be written out as CSV. Costs nothing while hidden. EDT only, apart
+ * from pongReceived.
+ */
+class PerfOverlay extends JComponent {
+    private static final int WINDOW_SECONDS = 300;
+    private static final int PROBE_MS = 50;
+    private static final long PING_TIMEOUT_NANOS = 5_000_000_000L; // An unanswered ping is replaced after this
+    private static final int WIDTH = 230;
+    private static final int LINE = 16;
+    private static final String[] LABELS = {"FPS", "Paint", "EDT lag", "Msgs/s", "RTT"};
+    private static final Color BG = new Color(12, 12, 20);
+    private static final Color FG = new Color(134, 239, 172);
+    private static final Color DIM = new Color(148, 163, 184);
+    private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+
+    // One row per second, oldest overwritten first
+    private final long[] sampleTimes = new long[WINDOW_SECONDS]; // Epoch millis
+    private final int[] fps = new int[WINDOW_SECONDS];
+    private final long[] paintMeanNanos = new long[WINDOW_SECONDS];
+    private final long[] paintMaxNanos = new long[WINDOW_SECONDS];
+    private final long[] lagMeanNanos = new long[WINDOW_SECONDS];
+    private final long[] lagMaxNanos = new long[WINDOW_SECONDS];
+    private final int[] inboundPerSecond = new int[WINDOW_SECONDS];
+    private final long[] rttNanos = new long[WINDOW_SECONDS]; // -1 = no pong yet
+    private int samples;
+
+    // The second being collected
+    private int paints;
+    private long paintTotal;
+    private long paintMax;
+    private int probes;
+    private long lagTotal;
+    private long lagMax;
+    private long lastInbound = -1;
+
+    private final Timer sampler = new Timer(1000, e -> sample());
+    private ScheduledExecutorService prober; // Non-null while shown
+    private ScheduledFuture<?> probeTask;
+    private ObjectOutputStream out; // Null until connected; no pings before then
+    private LongSupplier inboundCount = () -> 0;
+    private int pingSequence;
+    private volatile long pingSentNanos;  // For pingSequence; 0 once answered
+    private volatile long pingSequenceSent;
+    private volatile long lastRttNanos = -1;
+
+    PerfOverlay() {
+        setOpaque(true); // Repainting it never repaints the board underneath
+        setVisible(false);
+    }
+
+    void setOutput(ObjectOutputStream out) {
+        this.out = out;
+    }
+
+    /** Messages received so far; read once a second for the inbound rate. */
+    void setInboundCounter(LongSupplier inboundCount) {
+        this.inboundCount = inboundCount;
+    }
+
+    void toggle() {
+        setRunning(!isVisible());
+    }
+
+    void setRunning(boolean running) {
+        if (running == isVisible()) return;
+        setVisible(running);
+        if (running) {
+            resetSecond();
+            lastInbound = inboundCount.getAsLong();
+            prober = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "edt-probe");
+                t.setDaemon(true);
+                return t;
+            });
+            probeTask = prober.scheduleAtFixedRate(this::postProbe, 0, PROBE_MS, TimeUnit.MILLISECONDS);
+            sampler.start();
+        } else {
+            sampler.stop();
+            probeTask.cancel(false);
+            prober.shutdown();
+            prober = null;
+        }
+    }
+
+    /** Called by BoardPanel after each paint. */
+    void paintTimed(long nanos) {
+        if (!isVisible()) return;
+        paints++;
+        paintTotal += nanos;
+        paintMax = Math.max(paintMax, nanos);
+    }
+
+    // Runs on the probe thread; the lag is how long the EDT took to get to it
+    private void postProbe() {
+        long posted = System.nanoTime();
+        SwingUtilities.invokeLater(() -> {
+            long lag = System.nanoTime() - posted;
+            probes++;
+            lagTotal += lag;
+            lagMax = Math.max(lagMax, lag);
+        });
+    }
+
+    /** Listener thread: the server's echo of our PING. */
+    void pongReceived(Message pong) {
+        long sent = pingSentNanos;
+        if (sent == 0 || pong.getSequence() != pingSequenceSent) return; // Late answer to an older ping
+        lastRttNanos = System.nanoTime() - sent;
+        pingSentNanos = 0;
+    }
+
+    private void sendPing() {
+        Message ping = new Message(Message.PING, null, 0);
+        ping.setSequence(++pingSequence);
+        pingSequenceSent = pingSequence;
+        pingSentNanos = System.nanoTime();
+        try {
+            out.writeObject(ping);
+            out.flush();
+        } catch (IOException e) {
+            pingSentNanos = 0;
+        }
+    }
+
+    private void sample() {
+        int i = samples % WINDOW_SECONDS;
+        long inbound = inboundCount.getAsLong();
+        sampleTimes[i] = System.currentTimeMillis();
+        fps[i] = paints;
+        paintMeanNanos[i] = paints == 0 ? 0 : paintTotal / paints;
+        paintMaxNanos[i] = paintMax;
+        lagMeanNanos[i] = probes == 0 ? 0 : lagTotal / probes;
+        lagMaxNanos[i] = lagMax;
+        inboundPerSecond[i] = (int) (inbound - lastInbound);
+        // A ping still unanswered after a second shows as at least that long
+        long pending = pingSentNanos;
+        rttNanos[i] = pending != 0 ? Math.max(lastRttNanos, System.nanoTime() - pending) : lastRttNanos;
+        samples++;
+        lastInbound = inbound;
+        resetSecond();
+        if (out != null && (pending == 0 || System.nanoTime() - pending > PING_TIMEOUT_NANOS)) sendPing();
+        repaint();
+    }
+
+    private void resetSecond() {
+        paints = 0;
+        paintTotal = 0;
+        paintMax = 0;
+        probes = 0;
+        lagTotal = 0;
+        lagMax = 0;
+    }
+
+    /** Writes the kept samples, oldest first, to a CSV file in the working directory; returns its path. */
+    Path export() throws IOException {
+        Path file = Paths.get("perf-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".csv");
+        try (PrintWriter w = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            w.println("epoch_ms,fps,paint_mean_ms,paint_max_ms,edt_lag_mean_ms,edt_lag_max_ms,inbound_per_s,rtt_ms");
+            int count = Math.min(samples, WINDOW_SECONDS);
+            for (int n = samples - count; n < samples; n++) {
+                int i = n % WINDOW_SECONDS;
+                w.println(sampleTimes[i] + "," + fps[i] + "," + ms(paintMeanNanos[i]) + "," + ms(paintMaxNanos[i])
+                        + "," + ms(lagMeanNanos[i]) + "," + ms(lagMaxNanos[i]) + "," + inboundPerSecond[i]
+                        + "," + (rttNanos[i] < 0 ? "" : ms(rttNanos[i])));
+            }
+        }
+        Log.info("CLIENT", "Wrote {} performance samples to {}", Math.min(samples, WINDOW_SECONDS), file.toAbsolutePath());
+        return file;
+    }
+
+    private static String ms(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1e6);
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return new Dimension(WIDTH, LINE * (LABELS.length + 1) + 8);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2d = (Graphics2D) g;
+        g2d.setColor(BG);
+        g2d.fillRect(0, 0, getWidth(), getHeight());
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2d.setFont(FONT);
+
+        String[] values = new String[LABELS.length];
+        if (samples == 0) {
+            Arrays.fill(values, "…");
+        } else {
+            int i = (samples - 1) % WINDOW_SECONDS;
+            values[0] = String.valueOf(fps[i]);
+            values[1] = ms(paintMeanNanos[i]) + " / " + ms(paintMaxNanos[i]) + " ms";
+            values[2] = ms(lagMeanNanos[i]) + " / " + ms(lagMaxNanos[i]) + " ms";
+            values[3] = String.valueOf(inboundPerSecond[i]);
+            values[4] = rttNanos[i] < 0 ? "–" : ms(rttNanos[i]) + " ms";
+        }
+        int y = 4 + LINE - 4;
+        for (int r = 0; r < LABELS.length; r++, y += LINE) {
+            g2d.setColor(DIM);
+            g2d.drawString(LABELS[r], 8, y);
+            g2d.setColor(FG);
+            g2d.drawString(values[r], 80, y);
+        }
+        g2d.setColor(DIM);
+        g2d.drawString("mean / max · Shift+F3 saves", 8, y);
+    }
+}
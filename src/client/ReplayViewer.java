@@ -0,0 +1,259 @@
+package client;
+
+import model.GameState;
+import model.Replay;
+import util.Constants;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Plays back a recorded game (see model.Replay) on the regular BoardPanel,
+ * with play/pause, a speed choice and a scrubber. The header is read up
+ * front; events load on a background thread and are handed over in chunks,
+ * so a long recording can be watched while the rest is still coming in.
+ * Playing steps one event at a time on a single GameState; a seek rebuilds
+ * from the nearest keyframe instead of replaying from the start.
+ */
+public class ReplayViewer extends JFrame {
+    private static final int STEP_MS = 700;   // One move at 1×
+    private static final int CHUNK = 2048;    // Events per hand-over from the loader
+    private static final String[] SPEED_LABELS = {"½×", "1×", "2×", "4×", "8×"};
+    private static final double[] SPEEDS = {0.5, 1, 2, 4, 8};
+
+
+    private final Replay replay;
+    private final ClientGameModel board = new ClientGameModel();
+    private final Timer player = new Timer(STEP_MS, e -> step());
+    private GameState state;      // The position shown: after `position` events
+    private int position;
+    private boolean loaded;
+    private boolean scrubbing;    // Set while the slider is moved from code
+
+    private JButton playButton;
+    private JSlider scrubber;
+    private JLabel moveLabel;
+    private JLabel infoLabel;
+
+    private ReplayViewer(Path file, Replay replay) {
+        this.replay = replay;
+        this.state = replay.stateAt(0);
+
+        setTitle("🎲 Ludo Replay - " + file.getFileName());
+        setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        setLayout(new BorderLayout());
+        getContentPane().setBackground(Theme.DARK_BG);
+
+        infoLabel = new JLabel("Loading...", SwingConstants.CENTER);
+        infoLabel.setFont(Theme.font(Font.BOLD, 16));
+        infoLabel.setForeground(Theme.ACCENT_COLOR);
+        infoLabel.setOpaque(true);
+        infoLabel.setBackground(Theme.PANEL_BG);
+        infoLabel.setBorder(new EmptyBorder(12, 20, 12, 20));
+        add(infoLabel, BorderLayout.NORTH);
+
+        BoardPanel boardPanel = new BoardPanel(board);
+        JPanel boardContainer = new JPanel(new BorderLayout());
+        boardContainer.setBackground(Theme.DARK_BG);
+        boardContainer.setBorder(new EmptyBorder(10, 10, 10, 10));
+        boardContainer.add(boardPanel, BorderLayout.CENTER);
+        add(boardContainer, BorderLayout.CENTER);
+        add(createControls(), BorderLayout.SOUTH);
+
+        board.setNames(replay.getNames());
+        display(null);
+
+        pack();
+        setLocationRelativeTo(null);
+        setVisible(true);
+    }
+
+    @Override
+    public void dispose() {
+        player.stop();
+        super.dispose();
+    }
+
+    private JPanel createControls() {
+        JPanel panel = new JPanel(new BorderLayout(10, 0));
+        panel.setBackground(Theme.PANEL_BG);
+        panel.setBorder(new EmptyBorder(10, 20, 15, 20));
+
+        playButton = new JButton("▶ Play");
+        playButton.setFont(Theme.font(Font.BOLD, 14));
+        playButton.setBackground(Theme.PRIMARY_COLOR);
+        playButton.setForeground(Color.WHITE);
+        playButton.setFocusPainted(false);
+        playButton.setBorderPainted(false);
+        playButton.setPreferredSize(new Dimension(110, 35));
+        playButton.addActionListener(e -> setPlaying(!player.isRunning()));
+        panel.add(playButton, BorderLayout.WEST);
+
+        scrubber = new JSlider(0, 0, 0);
+        scrubber.setBackground(Theme.PANEL_BG);
+        scrubber.addChangeListener(e -> {
+            if (!scrubbing) seek(scrubber.getValue());
+        });
+        panel.add(scrubber, BorderLayout.CENTER);
+
+        JPanel right = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
+        right.setBackground(Theme.PANEL_BG);
+        moveLabel = new JLabel();
+        moveLabel.setFont(Theme.font(Font.PLAIN, 14));
+        moveLabel.setForeground(Theme.TEXT_COLOR);
+        right.add(moveLabel);
+        JComboBox<String> speed = new JComboBox<>(SPEED_LABELS);
+        speed.setSelectedIndex(1);
+        speed.addActionListener(e -> {
+            int delay = (int) (STEP_MS / SPEEDS[speed.getSelectedIndex()]);
+            player.setDelay(delay);
+            player.setInitialDelay(delay);
+        });
+        right.add(speed);
+        panel.add(right, BorderLayout.EAST);
+        return panel;
+    }
+
+    private void setPlaying(boolean play) {
+        if (play && position >= replay.size() && loaded) seek(0); // Play again from the start
+        if (play) {
+            player.start();
+        } else {
+            player.stop();
+        }
+        playButton.setText(play ? "⏸ Pause" : "▶ Play");
+    }
+
+    // One event forward on the current state; no keyframe needed
+    private void step() {
+        if (position >= replay.size()) {
+            if (loaded) setPlaying(false); // Otherwise wait for the loader to catch up
+            return;
+        }
+        String result = replay.apply(state, position++);
+        display(result);
+    }
+
+    private void seek(int target) {
+        if (target == position) return;
+        state = replay.stateAt(target);
+        position = target;
+        display(null);
+    }
+
+    private void display(String result) {
+        board.applyPlayers(state.getPlayers(), state.getCurrentTurn());
+        scrubbing = true;
+        scrubber.setValue(position);
+        scrubbing = false;
+        updateMoveLabel();
+        if (result != null) infoLabel.setText(result);
+        else if (position == 0) infoLabel.setText(loaded ? "Press play to watch the game" : "Loading...");
+    }
+
+    private void updateMoveLabel() {
+        moveLabel.setText("Move " + position + " / " + replay.size() + (loaded ? "" : "…"));
+    }
+
+    // Called on the EDT with each chunk the loader has parsed
+    private void append(List<int[]> chunks) {
+        for (int[] chunk : chunks) {
+            for (int i = 0; i < chunk.length; i += 2) replay.append(chunk[i], chunk[i + 1]);
+        }
+        scrubbing = true;
+        scrubber.setMaximum(replay.size());
+        scrubbing = false;
+        updateMoveLabel();
+    }
+
+    private void finishedLoading(String error) {
+        loaded = true;
+        updateMoveLabel();
+        if (error != null) {
+            infoLabel.setText("Replay cut short: " + error);
+        } else if (position == 0 && !player.isRunning()) {
+            infoLabel.setText("Press play to watch the game");
+        }
+    }
+
+    /** Opens a replay file; the header is read here, the events in the background. */
+    public static void open(Path file) throws IOException {
+        BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        Replay replay;
+        try {
+            replay = Replay.readHeader(in);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        SwingUtilities.invokeLater(() -> {
+            ReplayViewer viewer = new ReplayViewer(file, replay);
+            new SwingWorker<Void, int[]>() {
+                @Override
+                protected Void doInBackground() throws IOException {
+                    try (BufferedReader reader = in) {
+                        int[] event = new int[2];
+                        int[] chunk = new int[CHUNK * 2];
+                        int n = 0;
+                        for (String line; (line = reader.readLine()) != null; ) {
+                            if (!Replay.parseEvent(line, event)) continue; // Torn last line, or a future record type
+                            chunk[n++] = event[0];
+                            chunk[n++] = event[1];
+                            if (n == chunk.length) {
+                                publish(chunk);
+                                chunk = new int[CHUNK * 2];
+                                n = 0;
+                            }
+                        }
+                        if (n > 0) publish(Arrays.copyOf(chunk, n));
+                    }
+                    return null;
+                }
+
+                @Override
+                protected void process(List<int[]> chunks) {
+                    viewer.append(chunks);
+                }
+
+                @Override
+                protected void done() {
+                    String error = null;
+                    try {
+                        get();
+                    } catch (Exception e) {
+                        error = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+                    }
+                    viewer.finishedLoading(error);
+                }
+            }.execute();
+        });
+    }
+
+    /** Optional first argument: the replay file; otherwise one is picked from the replays folder. */
+    public static void main(String[] args) {
+        Path file;
+        if (args.length > 0) {
+            file = Paths.get(args[0]);
+        } else {
+            JFileChooser chooser = new JFileChooser(new File(Constants.REPLAY_DIR));
+            chooser.setDialogTitle("Open a Ludo replay");
+            if (chooser.showOpenDialog(null) != JFileChooser.APPROVE_OPTION) return;
+            file = chooser.getSelectedFile().toPath();
+        }
+        try {
+            open(file);
+        } catch (IOException e) {
+            System.err.println("Cannot open replay " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package client;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Colours and fonts shared by the client's windows. Each font is created once
+ * per style and size and then reused, instead of every label building its own
+ * Font (and resolving the family again) while the window is being put together.
+ */
+final class Theme {
+    static final String FAMILY = "Segoe UI";
+
+    // Modern Blue Theme Colors
+    static final Color PRIMARY_COLOR = new Color(0, 123, 255);
+    static final Color PRIMARY_HOVER = new Color(0, 105, 217);
+    static final Color DARK_BG = new Color(18, 18, 28);
+    static final Color PANEL_BG = new Color(25, 30, 48);
+    static final Color TEXT_COLOR = new Color(255, 255, 255);
+    static final Color SECONDARY_TEXT = new Color(170, 180, 200);
+    static final Color ACCENT_COLOR = new Color(64, 169, 255);
+    static final Color SUCCESS_COLOR = new Color(34, 197, 94);
+    static final Color ERROR_COLOR = new Color(239, 68, 68);
+    static final Color WARNING_COLOR = new Color(250, 204, 21);
+    static final Color DISABLED_COLOR = new Color(100, 100, 120);
+
+    private static final Map<Integer, Font> fonts = new ConcurrentHashMap<>();
+
+    private Theme() {
+    }
+
+    /** Initialises the look and feel and the main window's fonts ahead of building it. EDT. */
+    static void preload() {
+        UIManager.getLookAndFeelDefaults();
+        for (int size : new int[] {12, 16, 18, 24}) font(Font.BOLD, size);
+        font(Font.PLAIN, 16);
+    }
+
+    /** The shared FAMILY font in the given Font style and point size. */
+    static Font font(int style, int size) {
+        return fonts.computeIfAbsent(style << 16 | size, k -> new Font(FAMILY, style, size));
+    }
+}
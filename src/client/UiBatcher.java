@@ -0,0 +1,108 @@
+package client;
+
+import model.Message;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Hands server messages from the listener thread to the EDT in batches, at
+ * most one per frame, instead of one invokeLater per message. Within a batch,
+ * updates that a later message makes pointless are dropped: every INFO/MOVE
+ * line but the last (they only set the status label), and every STATE frame
+ * followed by another STATE before any DICE event (lockstep moves apply on
+ * top of the frame before them, so that one is kept). A rejected keyframe
+ * request is not a frame and supersedes nothing.
+ */
+class UiBatcher {
+    private static final long FRAME_NANOS = 16_000_000L;
+
+    private final ConcurrentLinkedQueue<Message> inbound = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Consumer<Message> handler;
+    private final Timer frameTimer;
+    private long lastDrain; // EDT only
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    /** The handler runs on the EDT, once per message that survives collapsing, in arrival order. */
+    UiBatcher(Consumer<Message> handler) {
+        this.handler = handler;
+        frameTimer = new Timer(0, e -> drain());
+        frameTimer.setRepeats(false);
+    }
+
+    /** Runs the task now if this is the EDT, otherwise queues it there. */
+    static void onEdt(Runnable task) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            task.run();
+        } else {
+            SwingUtilities.invokeLater(task);
+        }
+    }
+
+    /** Called by the listener thread for every message; never blocks. */
+    void post(Message msg) {
+        inbound.add(msg);
+        received.increment();
+        if (scheduled.compareAndSet(false, true)) SwingUtilities.invokeLater(this::schedule);
+    }
+
+    // Drains at once if a frame has passed since the last batch, otherwise when it has
+    private void schedule() {
+        long wait = lastDrain + FRAME_NANOS - System.nanoTime();
+        if (wait <= 0) {
+            drain();
+        } else {
+            frameTimer.setInitialDelay((int) Math.max(1, wait / 1_000_000));
+            frameTimer.restart();
+        }
+    }
+
+    private void drain() {
+        scheduled.set(false); // Anything posted from here on schedules the next batch
+        lastDrain = System.nanoTime();
+        List<Message> batch = new ArrayList<>();
+        for (Message m; (m = inbound.poll()) != null; ) batch.add(m);
+        if (batch.isEmpty()) return;
+        batches.increment();
+
+        boolean[] superseded = new boolean[batch.size()];
+        boolean laterInfo = false;
+        boolean laterState = false;
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            String type = batch.get(i).getType();
+            if (Message.INFO.equals(type) || Message.MOVE.equals(type)) {
+                superseded[i] = laterInfo;
+                laterInfo = true;
+            } else if (Message.STATE.equals(type) && !Message.REJECTED.equals(batch.get(i).getContent())) {
+                superseded[i] = laterState;
+                laterState = true;
+            } else if (Message.DICE.equals(type)) {
+                laterState = false;
+            }
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            if (superseded[i]) {
+                collapsed.increment();
+                continue;
+            }
+            try {
+                handler.accept(batch.get(i));
+            } catch (RuntimeException e) {
+                System.err.println("Error handling " + batch.get(i).getType() + ": " + e);
+            }
+        }
+    }
+
+    long getReceived() { return received.sum(); }
+    long getCollapsed() { return collapsed.sum(); }
+    long getBatches() { return batches.sum(); }
+}
@@ -4,27 +4,58 @@ import java.io.Serializable;
 import java.util.*;
 
 public class GameState implements Serializable {
-    private Map<String, Player> players = new LinkedHashMap<>();
-    private String currentTurn;
+    public static final int NO_PLAYER = 0;
+    
+    private Map<Integer, Player> players = new LinkedHashMap<>();
+    private int currentTurn = NO_PLAYER;
+    private List<Player> finishOrder = new ArrayList<>();
+    private long hash;    // Zobrist hash, kept up to date by every change below
+    private long turnKey; // Side-to-move key currently folded into hash
     private static final int BOARD_SIZE = 52; // Main circular path
     private static final int HOME_STRETCH = 5; // Home column length
     private static final int WINNING_POSITION = BOARD_SIZE + HOME_STRETCH;
     
     public void addPlayer(Player p) {
-        players.put(p.getName(), p);
-        // Assign colors in order: Red(0), Green(1), Yellow(2), Blue(3)
-        p.setColor(players.size() - 1);
-        if (currentTurn == null) currentTurn = p.getName();
+        // Lowest colour nobody holds: Red(0), Green(1), Yellow(2), Blue(3). Counting
+        // players instead would hand a seat that is still taken to whoever joins after a leave
+        int color = 0;
+        for (boolean taken = true; taken; ) {
+            taken = false;
+            for (Player other : players.values()) {
+                if (other.getColor() == color && other.getId() != p.getId()) {
+                    taken = true;
+                    color++;
+                    break;
+                }
+            }
+        }
+        players.put(p.getId(), p);
+        p.setColor(color);
+        hash ^= Zobrist.piece(p.getColor(), p.getPosition());
+        if (currentTurn == NO_PLAYER) setTurn(p.getId());
     }
     
-    public synchronized String movePlayer(String playerName, int dice) {
-        Player player = players.get(playerName);
+    public void removePlayer(int playerId) {
+        Player p = players.remove(playerId);
+        if (p == null) return;
+        hash ^= Zobrist.piece(p.getColor(), p.getPosition());
+        if (playerId == currentTurn) {
+            hash ^= turnKey;
+            turnKey = 0;
+        }
+    }
+    
+    public synchronized String movePlayer(int playerId, int dice) {
+        Player player = players.get(playerId);
         if (player == null || player.hasFinished()) return "Invalid move";
+        String playerName = player.getName();
         
         // If token is in home, need 6 to start
         if (player.isInHome()) {
             if (dice == 6) {
+                int from = player.getPosition();
                 player.moveToStart();
+                moved(player, from);
                 return playerName + " rolled 6! Token enters the board. Roll again!";
             } else {
                 nextTurn();
@@ -66,14 +97,17 @@ public class GameState implements Serializable {
         if (newPos == WINNING_POSITION - 1) {
             player.setFinished(true);
             player.setPosition(newPos);
+            moved(player, currentPos);
+            finishOrder.add(player);
             nextTurn();
             return playerName + " reached the finish! 🎉";
         }
         
         // Check for capture
-        String capturedPlayer = checkCapture(newPos, playerName);
+        String capturedPlayer = checkCapture(newPos, playerId);
         
         player.setPosition(newPos);
+        moved(player, currentPos);
         
         String result = playerName + " moved " + dice + " steps";
         if (capturedPlayer != null) {
@@ -101,7 +135,8 @@ public class GameState implements Serializable {
         }
     }
     
-    private String checkCapture(int position, String currentPlayer) {
+    // Package-private for the benchmarks in benchmarks/model
+    String checkCapture(int position, int currentPlayer) {
         // Don't capture on safe zones
         if (isSafeZone(position)) return null;
         
@@ -109,13 +144,11 @@ public class GameState implements Serializable {
         if (position >= BOARD_SIZE) return null;
         
         // Check if another player is on this position
-        for (Map.Entry<String, Player> entry : players.entrySet()) {
-            String name = entry.getKey();
-            Player p = entry.getValue();
-            
-            if (!name.equals(currentPlayer) && p.getPosition() == position && !p.isInHome()) {
+        for (Player p : players.values()) {
+            if (p.getId() != currentPlayer && p.getPosition() == position && !p.isInHome()) {
                 p.sendHome();
-                return name;
+                moved(p, position);
+                return p.getName();
             }
         }
         return null;
@@ -128,21 +161,101 @@ public class GameState implements Serializable {
                position == 8 || position == 21 || position == 34 || position == 47;
     }
     
-    private void nextTurn() {
-        List<String> keys = new ArrayList<>(players.keySet());
+    void nextTurn() {
+        List<Integer> keys = new ArrayList<>(players.keySet());
         int currentIndex = keys.indexOf(currentTurn);
         
         // Find next player who hasn't finished
         for (int i = 1; i <= keys.size(); i++) {
             int nextIndex = (currentIndex + i) % keys.size();
-            String nextPlayer = keys.get(nextIndex);
+            int nextPlayer = keys.get(nextIndex);
             if (!players.get(nextPlayer).hasFinished()) {
-                currentTurn = nextPlayer;
+                setTurn(nextPlayer);
                 return;
             }
         }
     }
     
-    public Map<String, Player> getPlayers() { return players; }
-    public String getCurrentTurn() { return currentTurn; }
+    // Two XORs: take the token off its old square's key and onto the new one
+    private void moved(Player p, int from) {
+        hash ^= Zobrist.piece(p.getColor(), from) ^ Zobrist.piece(p.getColor(), p.getPosition());
+    }
+    
+    private void setTurn(int playerId) {
+        hash ^= turnKey;
+        Player p = players.get(playerId);
+        turnKey = p != null ? Zobrist.turn(p.getColor()) : 0;
+        hash ^= turnKey;
+        currentTurn = playerId;
+    }
+    
+    /**
+     * Rebuilds a position from a keyframe, so a lockstep client can replay moves
+     * on its own copy. Tokens on the last square count as finished; the order in
+     * which they finished is not part of a keyframe.
+     */
+    public static GameState fromSnapshot(int[] ids, String[] names, int[] colors, int[] positions, int turn) {
+        GameState s = new GameState();
+        for (int i = 0; i < ids.length; i++) {
+            Player p = new Player(ids[i], names[i]);
+            p.setColor(colors[i]);
+            p.setPosition(positions[i]);
+            if (positions[i] == WINNING_POSITION - 1) {
+                p.setFinished(true);
+                s.finishOrder.add(p);
+            }
+            s.players.put(ids[i], p);
+        }
+        s.currentTurn = turn;
+        Player current = s.players.get(turn);
+        s.turnKey = current != null ? Zobrist.turn(current.getColor()) : 0;
+        s.hash = s.computeHash();
+        return s;
+    }
+    
+    /**
+     * Zobrist hash of the position, maintained incrementally in O(1) per move.
+     * Also usable as a transposition-table key by search bots.
+     */
+    public long getHash() { return hash; }
+    
+    /** The same hash recomputed from scratch, for verification. */
+    public long computeHash() {
+        long h = 0;
+        for (Player p : players.values()) h ^= Zobrist.piece(p.getColor(), p.getPosition());
+        Player turn = players.get(currentTurn);
+        return turn != null ? h ^ Zobrist.turn(turn.getColor()) : h;
+    }
+    
+    /** The game is over once at most one player is still racing. */
+    public boolean isGameOver() {
+        if (finishOrder.isEmpty()) return false;
+        int racing = 0;
+        for (Player p : players.values()) {
+            if (!p.hasFinished()) racing++;
+        }
+        return racing <= 1;
+    }
+    
+    /** Players from first to last: finishers in order, then the rest by progress. */
+    public List<Player> getStandings() {
+        List<Player> standings = new ArrayList<>(finishOrder);
+        List<Player> remaining = new ArrayList<>();
+        for (Player p : players.values()) {
+            if (!p.hasFinished()) remaining.add(p);
+        }
+        remaining.sort((a, b) -> Integer.compare(progress(b), progress(a)));
+        standings.addAll(remaining);
+        return standings;
+    }
+    
+    private int progress(Player p) {
+        if (p.isInHome()) return -1;
+        if (p.getPosition() >= BOARD_SIZE) return p.getPosition();
+        int start = p.getColor() * 13;
+        return (p.getPosition() - start + BOARD_SIZE) % BOARD_SIZE;
+    }
+    
+    public Map<Integer, Player> getPlayers() { return players; }
+    public int getCurrentTurn() { return currentTurn; }
 }
\ No newline at end of file
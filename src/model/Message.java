@@ -1,11 +1,22 @@
 package model;
 
-import java.io.Serializable;
-import java.time.LocalDateTime;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.StreamCorruptedException;
+import java.time.Instant;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 
-public class Message implements Serializable {
-    private static final long serialVersionUID = 1L;
+/**
+ * Protocol envelope. Written in a compact form (see writeExternal): the type is
+ * a one-byte code, only fields that are set go on the wire, and the timestamp
+ * is epoch millis, so decoding a frame allocates little beyond its strings.
+ */
+public class Message implements Externalizable {
+    private static final long serialVersionUID = 2L;
     
     // Message types
     public static final String JOIN = "JOIN";
@@ -18,20 +29,77 @@ public class Message implements Serializable {
     public static final String PRIVATE_CHAT = "PRIVATE_CHAT";
     public static final String USER_LIST = "USER_LIST";
     public static final String TYPING = "TYPING";
+    public static final String LEADERBOARD = "LEADERBOARD";
+    public static final String HISTORY = "HISTORY";
+    public static final String WELCOME = "WELCOME";
+    public static final String PRESENCE = "PRESENCE";
+    public static final String LOBBY_CHAT = "LOBBY_CHAT";
+    public static final String DICE = "DICE"; // Lockstep move: mover in playerId, roll in content
+    public static final String PING = "PING"; // Echoed back unchanged to the sender; sequence tells pings apart
+
+    // Conversation id of the server-wide lobby in recipientId (0 is the room chat)
+    public static final int LOBBY_CONVERSATION = -1;
+
+    // PRESENCE events (carried in content) and roster statuses
+    public static final String JOINED = "JOINED";
+    public static final String LEFT = "LEFT";
+    public static final String STATUS = "STATUS";
+    public static final String ONLINE = "online";
+    public static final String BOT = "bot";
+    public static final String FINISHED = "finished";
+
+    // Server's answer to a ROLL, sent to the roller only: the face in content, or REJECTED
+    public static final String REJECTED = "REJECTED";
+
+    // Wire codes for the types above; append only, the index is the code
+    private static final String[] TYPES = {
+        JOIN, INFO, STATE, YOUR_TURN, MOVE, ROLL, PUBLIC_CHAT, PRIVATE_CHAT, USER_LIST,
+        TYPING, LEADERBOARD, HISTORY, WELCOME, PRESENCE, LOBBY_CHAT, DICE, PING
+    };
+    private static final int UNKNOWN_TYPE = -1;
+    private static final int MAX_UTF_CHARS = 65535 / 3; // Longest string writeUTF always accepts
+
+    // Bounds on what a peer can make readExternal allocate; lengths come off the wire
+    private static final int MAX_ARRAY = 1 << 16;     // Well above any roster, leaderboard or history page
+    private static final int MAX_STRING_CHARS = 1 << 20;
+    private static final int MAX_DEPTH = 1;           // A history entry carries no history of its own
+
+    // Bits of the field mask that precedes the optional fields
+    private static final int F_CONTENT = 1, F_PLAYER_NAME = 1 << 1, F_RECIPIENT = 1 << 2,
+            F_PLAYER_ID = 1 << 3, F_RECIPIENT_ID = 1 << 4, F_USER_LIST = 1 << 5, F_USER_IDS = 1 << 6,
+            F_SEQUENCE = 1 << 7, F_HISTORY = 1 << 8, F_VERSION = 1 << 9, F_STATUSES = 1 << 10,
+            F_STATE_HASH = 1 << 11;
+
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("HH:mm").withZone(ZoneId.systemDefault());
+    private static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss").withZone(ZoneId.systemDefault());
     
     private String type;
     private String content;
     private String playerName;
     private String recipient;  // For private chat messages
-    private LocalDateTime timestamp;
+    private int playerId;      // Sender id assigned by the server at JOIN (0 = none)
+    private int recipientId;   // Private chat / history peer id (0 = none)
+    private long timestamp;    // Epoch millis when the message was created
     private String[] userList; // For user list updates
+    private int[] userIds;     // Ids matching userList, forming the roster
+    private long sequence;     // Chat: position in the server's history (0 = not stored); DICE/STATE: move number
+    private Message[] history; // For chat history pages
+    private long version;      // Roster version for USER_LIST snapshots and PRESENCE deltas
+    private String[] statuses; // Statuses matching userList
+    private long stateHash;    // Zobrist hash of the position a STATE frame describes
+    
+    // Used by deserialization only
+    public Message() {
+    }
     
     // Constructor for game messages (backward compatible)
     public Message(String type, String content, String playerName) {
         this.type = type;
         this.content = content;
         this.playerName = playerName;
-        this.timestamp = LocalDateTime.now();
+        this.timestamp = System.currentTimeMillis();
     }
     
     // Constructor for private chat messages
@@ -40,32 +108,183 @@ public class Message implements Serializable {
         this.content = content;
         this.playerName = playerName;
         this.recipient = recipient;
-        this.timestamp = LocalDateTime.now();
+        this.timestamp = System.currentTimeMillis();
+    }
+    
+    // Constructor for id-addressed messages
+    public Message(String type, String content, int playerId) {
+        this.type = type;
+        this.content = content;
+        this.playerId = playerId;
+        this.timestamp = System.currentTimeMillis();
+    }
+    
+    // Constructor for id-addressed private chat messages
+    public Message(String type, String content, int playerId, int recipientId) {
+        this.type = type;
+        this.content = content;
+        this.playerId = playerId;
+        this.recipientId = recipientId;
+        this.timestamp = System.currentTimeMillis();
     }
     
     public String getType() { return type; }
     public String getContent() { return content; }
     public String getPlayerName() { return playerName; }
     public String getRecipient() { return recipient; }
-    public LocalDateTime getTimestamp() { return timestamp; }
+    public int getPlayerId() { return playerId; }
+    public int getRecipientId() { return recipientId; }
+    public int[] getUserIds() { return userIds; }
+    public long getTimestamp() { return timestamp; }
     public String[] getUserList() { return userList; }
+    public long getSequence() { return sequence; }
+    public Message[] getHistory() { return history; }
+    public long getVersion() { return version; }
+    public String[] getStatuses() { return statuses; }
+    public long getStateHash() { return stateHash; }
     
+    public void setContent(String content) { this.content = content; }
+    public void setPlayerName(String playerName) { this.playerName = playerName; }
     public void setRecipient(String recipient) { this.recipient = recipient; }
     public void setUserList(String[] userList) { this.userList = userList; }
+    public void setPlayerId(int playerId) { this.playerId = playerId; }
+    public void setRecipientId(int recipientId) { this.recipientId = recipientId; }
+    public void setUserIds(int[] userIds) { this.userIds = userIds; }
+    public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
+    public void setSequence(long sequence) { this.sequence = sequence; }
+    public void setHistory(Message[] history) { this.history = history; }
+    public void setVersion(long version) { this.version = version; }
+    public void setStatuses(String[] statuses) { this.statuses = statuses; }
+    public void setStateHash(long stateHash) { this.stateHash = stateHash; }
     
     public String getFormattedTimestamp() {
-        if (timestamp != null) {
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm");
-            return timestamp.format(formatter);
-        }
-        return "";
+        return timestamp != 0 ? TIME_FORMAT.format(Instant.ofEpochMilli(timestamp)) : "";
     }
     
     public String getFormattedDate() {
-        if (timestamp != null) {
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
-            return timestamp.format(formatter);
+        return timestamp != 0 ? DATE_FORMAT.format(Instant.ofEpochMilli(timestamp)) : "";
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        int code = typeCode(type);
+        out.writeByte(code);
+        if (code == UNKNOWN_TYPE) writeString(out, type);
+        int mask = (content != null ? F_CONTENT : 0)
+                | (playerName != null ? F_PLAYER_NAME : 0)
+                | (recipient != null ? F_RECIPIENT : 0)
+                | (playerId != 0 ? F_PLAYER_ID : 0)
+                | (recipientId != 0 ? F_RECIPIENT_ID : 0)
+                | (userList != null ? F_USER_LIST : 0)
+                | (userIds != null ? F_USER_IDS : 0)
+                | (sequence != 0 ? F_SEQUENCE : 0)
+                | (history != null ? F_HISTORY : 0)
+                | (version != 0 ? F_VERSION : 0)
+                | (statuses != null ? F_STATUSES : 0)
+                | (stateHash != 0 ? F_STATE_HASH : 0);
+        out.writeShort(mask);
+        out.writeLong(timestamp);
+        if (content != null) writeString(out, content);
+        if (playerName != null) writeString(out, playerName);
+        if (recipient != null) writeString(out, recipient);
+        if (playerId != 0) out.writeInt(playerId);
+        if (recipientId != 0) out.writeInt(recipientId);
+        if (userList != null) writeStrings(out, userList);
+        if (userIds != null) {
+            out.writeInt(userIds.length);
+            for (int id : userIds) out.writeInt(id);
+        }
+        if (sequence != 0) out.writeLong(sequence);
+        if (history != null) {
+            // Nested inline; the page never shares objects, so no handles are needed
+            out.writeInt(history.length);
+            for (Message m : history) m.writeExternal(out);
+        }
+        if (version != 0) out.writeLong(version);
+        if (statuses != null) writeStrings(out, statuses);
+        if (stateHash != 0) out.writeLong(stateHash);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        readExternal(in, 0);
+    }
+
+    private void readExternal(ObjectInput in, int depth) throws IOException {
+        int code = in.readByte();
+        if (code < UNKNOWN_TYPE || code >= TYPES.length) throw new StreamCorruptedException("Bad message type " + code);
+        type = code == UNKNOWN_TYPE ? readString(in) : TYPES[code]; // Known types come back as the constants
+        int mask = in.readUnsignedShort();
+        timestamp = in.readLong();
+        if ((mask & F_CONTENT) != 0) content = readString(in);
+        if ((mask & F_PLAYER_NAME) != 0) playerName = readString(in);
+        if ((mask & F_RECIPIENT) != 0) recipient = readString(in);
+        if ((mask & F_PLAYER_ID) != 0) playerId = in.readInt();
+        if ((mask & F_RECIPIENT_ID) != 0) recipientId = in.readInt();
+        if ((mask & F_USER_LIST) != 0) userList = readStrings(in);
+        if ((mask & F_USER_IDS) != 0) {
+            userIds = new int[readLength(in, MAX_ARRAY)];
+            for (int i = 0; i < userIds.length; i++) userIds[i] = in.readInt();
+        }
+        if ((mask & F_SEQUENCE) != 0) sequence = in.readLong();
+        if ((mask & F_HISTORY) != 0) {
+            if (depth >= MAX_DEPTH) throw new InvalidObjectException("History nested deeper than " + MAX_DEPTH);
+            history = new Message[readLength(in, MAX_ARRAY)];
+            for (int i = 0; i < history.length; i++) {
+                history[i] = new Message();
+                history[i].readExternal(in, depth + 1);
+            }
+        }
+        if ((mask & F_VERSION) != 0) version = in.readLong();
+        if ((mask & F_STATUSES) != 0) statuses = readStrings(in);
+        if ((mask & F_STATE_HASH) != 0) stateHash = in.readLong();
+    }
+
+    private static int typeCode(String type) {
+        for (int i = 0; i < TYPES.length; i++) {
+            if (TYPES[i].equals(type)) return i;
+        }
+        return UNKNOWN_TYPE;
+    }
+
+    // writeUTF caps out at 64 KB of encoded bytes, so longer strings take a char-by-char path
+    private static void writeString(ObjectOutput out, String s) throws IOException {
+        if (s.length() <= MAX_UTF_CHARS) {
+            out.writeBoolean(false);
+            out.writeUTF(s);
+        } else {
+            out.writeBoolean(true);
+            out.writeInt(s.length());
+            out.writeChars(s);
+        }
+    }
+
+    private static String readString(ObjectInput in) throws IOException {
+        if (!in.readBoolean()) return in.readUTF();
+        char[] chars = new char[readLength(in, MAX_STRING_CHARS)];
+        for (int i = 0; i < chars.length; i++) chars[i] = in.readChar();
+        return new String(chars);
+    }
+
+    private static int readLength(ObjectInput in, int max) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > max) throw new InvalidObjectException("Length " + length + " outside 0.." + max);
+        return length;
+    }
+
+    private static void writeStrings(ObjectOutput out, String[] values) throws IOException {
+        out.writeInt(values.length);
+        for (String v : values) {
+            out.writeBoolean(v != null);
+            if (v != null) writeString(out, v);
+        }
+    }
+
+    private static String[] readStrings(ObjectInput in) throws IOException {
+        String[] values = new String[readLength(in, MAX_ARRAY)];
+        for (int i = 0; i < values.length; i++) {
+            if (in.readBoolean()) values[i] = readString(in);
         }
-        return "";
+        return values;
     }
 }
@@ -3,15 +3,18 @@ package model;
 import java.io.Serializable;
 
 public class Player implements Serializable {
+    private int id;
     private String name;
     private int position = -1;  // -1 means token is in home (not on board yet)
     private boolean hasFinished = false;
     private int color; // 0=Red, 1=Green, 2=Yellow, 3=Blue
     
-    public Player(String name) { 
+    public Player(int id, String name) { 
+        this.id = id;
         this.name = name; 
     }
     
+    public int getId() { return id; }
     public String getName() { return name; }
     public int getPosition() { return position; }
     public boolean hasFinished() { return hasFinished; }
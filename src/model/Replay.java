@@ -0,0 +1,172 @@
+package model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A recorded game: the seating it started with and every event after that,
+ * in the text format the server's GameRecorder writes:
+ *
+ *   LUDO-REPLAY 1
+ *   PLAYER id colour name     (one per seat, in turn order)
+ *   START turnId
+ *   M playerId dice           (a move)
+ *   L playerId                (a player left)
+ *
+ * Events are replayed through GameState.movePlayer, exactly as the server
+ * played them. Every KEYFRAME_INTERVAL events the position is kept as a
+ * keyframe, so stateAt rebuilds any point of a long game from the nearest
+ * keyframe with at most KEYFRAME_INTERVAL - 1 moves. Events can be appended
+ * while the rest of the file is still loading. Not thread-safe.
+ */
+public class Replay {
+    public static final String MAGIC = "LUDO-REPLAY 1";
+    public static final String PLAYER = "PLAYER";
+    public static final String START = "START";
+    public static final String MOVE = "M";
+    public static final String LEAVE = "L";
+    public static final int KEYFRAME_INTERVAL = 64;
+
+    private final Map<Integer, String> names = new HashMap<>();
+    private int[] movers = new int[256];
+    private int[] dice = new int[256]; // 0 marks a player leaving
+    private int size;
+    private final List<Keyframe> keyframes = new ArrayList<>(); // keyframes.get(k) is the state before event k * KEYFRAME_INTERVAL
+    private final GameState tail; // The state after the last appended event
+
+    /** A position: who is seated, where, and whose turn it is. */
+    private static final class Keyframe {
+        final int[] ids;
+        final int[] colors;
+        final int[] positions;
+        final int turn;
+
+        Keyframe(GameState state) {
+            int n = state.getPlayers().size();
+            ids = new int[n];
+            colors = new int[n];
+            positions = new int[n];
+            int i = 0;
+            for (Player p : state.getPlayers().values()) {
+                ids[i] = p.getId();
+                colors[i] = p.getColor();
+                positions[i] = p.getPosition();
+                i++;
+            }
+            turn = state.getCurrentTurn();
+        }
+    }
+
+    public Replay(int[] ids, String[] playerNames, int[] colors, int firstTurn) {
+        for (int i = 0; i < ids.length; i++) names.put(ids[i], playerNames[i]);
+        int[] home = new int[ids.length];
+        Arrays.fill(home, -1);
+        tail = GameState.fromSnapshot(ids, playerNames, colors, home, firstTurn);
+        keyframes.add(new Keyframe(tail));
+    }
+
+    /** Reads the header, up to and including START; the reader is left at the first event. */
+    public static Replay readHeader(BufferedReader in) throws IOException {
+        if (!MAGIC.equals(in.readLine())) throw new IOException("Not a Ludo replay");
+        List<String[]> seats = new ArrayList<>();
+        for (String line; (line = in.readLine()) != null; ) {
+            String[] f = line.split(" ", 4);
+            if (f[0].equals(PLAYER) && f.length == 4) {
+                seats.add(f);
+            } else if (f[0].equals(START) && f.length == 2) {
+                int n = seats.size();
+                int[] ids = new int[n];
+                String[] playerNames = new String[n];
+                int[] colors = new int[n];
+                for (int i = 0; i < n; i++) {
+                    ids[i] = parse(seats.get(i)[1]);
+                    colors[i] = parse(seats.get(i)[2]);
+                    playerNames[i] = seats.get(i)[3];
+                }
+                return new Replay(ids, playerNames, colors, parse(f[1]));
+            } else {
+                throw new IOException("Bad replay header line: " + line);
+            }
+        }
+        throw new IOException("Replay ends before the game starts");
+    }
+
+    /**
+     * Parses one event line into {playerId, dice}, dice being 0 for a player
+     * leaving. Returns false for a line that is not an event.
+     */
+    public static boolean parseEvent(String line, int[] event) {
+        String[] f = line.split(" ");
+        try {
+            if (f.length == 3 && f[0].equals(MOVE)) {
+                event[0] = Integer.parseInt(f[1]);
+                event[1] = Integer.parseInt(f[2]);
+                return event[1] >= 1 && event[1] <= 6;
+            }
+            if (f.length == 2 && f[0].equals(LEAVE)) {
+                event[0] = Integer.parseInt(f[1]);
+                event[1] = 0;
+                return true;
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        return false;
+    }
+
+    private static int parse(String s) throws IOException {
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            throw new IOException("Bad number in replay: " + s);
+        }
+    }
+
+    /** Adds the next event; dice 0 means the player left. */
+    public void append(int playerId, int roll) {
+        if (size == movers.length) {
+            movers = Arrays.copyOf(movers, size * 2);
+            dice = Arrays.copyOf(dice, size * 2);
+        }
+        movers[size] = playerId;
+        dice[size] = roll;
+        apply(tail, size);
+        size++;
+        if (size % KEYFRAME_INTERVAL == 0) keyframes.add(new Keyframe(tail));
+    }
+
+    /** Number of events; positions run from 0 (the start) to size(). */
+    public int size() {
+        return size;
+    }
+
+    /** A fresh state as it was after the first index events. */
+    public GameState stateAt(int index) {
+        index = Math.max(0, Math.min(index, size));
+        Keyframe k = keyframes.get(index / KEYFRAME_INTERVAL);
+        String[] playerNames = new String[k.ids.length];
+        for (int i = 0; i < k.ids.length; i++) playerNames[i] = names.get(k.ids[i]);
+        GameState state = GameState.fromSnapshot(k.ids, playerNames, k.colors, k.positions, k.turn);
+        for (int i = index - index % KEYFRAME_INTERVAL; i < index; i++) apply(state, i);
+        return state;
+    }
+
+    /** Plays event index on state and returns what happened, as the server announced it. */
+    public String apply(GameState state, int index) {
+        int playerId = movers[index];
+        if (dice[index] == 0) {
+            state.removePlayer(playerId);
+            return names.get(playerId) + " left the game";
+        }
+        return state.movePlayer(playerId, dice[index]);
+    }
+
+    public Map<Integer, String> getNames() {
+        return names;
+    }
+}
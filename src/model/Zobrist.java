@@ -0,0 +1,42 @@
+package model;
+
+import java.util.Random;
+
+/**
+ * Zobrist keys for Ludo positions: one random 64-bit key per (seat colour, square)
+ * and one per colour to move. A position's hash is the XOR of the keys of every
+ * token plus the side to move, so a move updates it with two XORs. The table is
+ * generated from a fixed seed, so servers, clients and bots all agree on it.
+ */
+public final class Zobrist {
+    public static final int SEATS = 4;
+    private static final int SQUARES = 59; // -1 (home) through 57, the last home-stretch square
+    private static final long SEED = 0x4C75646F4D617374L;
+
+    private static final long[] PIECE = new long[SEATS * SQUARES];
+    private static final long[] TURN = new long[SEATS];
+
+    static {
+        Random random = new Random(SEED);
+        for (int i = 0; i < PIECE.length; i++) PIECE[i] = random.nextLong();
+        for (int i = 0; i < TURN.length; i++) TURN[i] = random.nextLong();
+    }
+
+    private Zobrist() {}
+
+    /** Key of a token of the given colour on the given square (-1 = home). */
+    public static long piece(int color, int position) {
+        return PIECE[(color & (SEATS - 1)) * SQUARES + position + 1];
+    }
+
+    public static long turn(int color) {
+        return TURN[color & (SEATS - 1)];
+    }
+
+    /** Full hash from scratch; turnColor is -1 when nobody is to move. */
+    public static long hash(int[] colors, int[] positions, int count, int turnColor) {
+        long h = 0;
+        for (int i = 0; i < count; i++) h ^= piece(colors[i], positions[i]);
+        return turnColor >= 0 ? h ^ turn(turnColor) : h;
+    }
+}
@@ -0,0 +1,178 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import model.Player;
+import util.Log;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local-only admin endpoint for a running server, bound to the loopback interface.
+ * - GET /metrics  Prometheus text format: message counters, handleMessage latency,
+ *                 bot loop count, rate-limited messages, and per-room / per-connection statistics
+ * - GET /rooms    JSON view of every room: players, positions, current turn and
+ *                 per-connection traffic and outbound backlog
+ */
+public class AdminServer {
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final List<GameManager> rooms;
+    private HttpServer http;
+
+    public AdminServer(List<GameManager> rooms) {
+        this.rooms = rooms;
+    }
+
+    public void start(int port) throws IOException {
+        http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        http.createContext("/metrics", ex -> respond(ex, "text/plain; version=0.0.4", metrics()));
+        http.createContext("/rooms", ex -> respond(ex, "application/json", rooms()));
+        http.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "admin-http");
+            t.setDaemon(true);
+            return t;
+        }));
+        http.start();
+        Log.info("ADMIN", "Admin endpoint on http://127.0.0.1:{}/metrics and /rooms", port);
+    }
+
+    private static void respond(HttpExchange ex, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", contentType);
+        ex.sendResponseHeaders(200, bytes.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    String metrics() {
+        StringBuilder sb = new StringBuilder(4096);
+        counter(sb, "ludo_messages_in_total", "Messages received from clients", Metrics.MESSAGES_IN.sum());
+        counter(sb, "ludo_messages_out_total", "Messages written to clients", Metrics.MESSAGES_OUT.sum());
+        counter(sb, "ludo_connections_total", "Client connections accepted", Metrics.CONNECTIONS.sum());
+        counter(sb, "ludo_bot_loop_iterations_total", "Bot polling loop iterations", Metrics.BOT_LOOPS.sum());
+        counter(sb, "ludo_bus_published_total", "Messages published on the chat bus", Metrics.BUS_PUBLISHED.sum());
+        counter(sb, "ludo_keyframe_requests_total", "STATE keyframes requested after a client hash mismatch", Metrics.KEYFRAME_REQUESTS.sum());
+        counter(sb, "ludo_chat_filtered_total", "Chat messages with banned phrases masked", Metrics.CHAT_FILTERED.sum());
+        counter(sb, "ludo_log_dropped_total", "Log records dropped because the buffer was full", Log.droppedCount());
+
+        sb.append("# HELP ludo_throttled_total Messages dropped by rate limiting, by type\n");
+        sb.append("# TYPE ludo_throttled_total counter\n");
+        for (Map.Entry<String, LongAdder> e : Metrics.THROTTLED.entrySet()) {
+            sb.append("ludo_throttled_total{type=\"").append(e.getKey()).append("\"} ")
+              .append(e.getValue().sum()).append('\n');
+        }
+
+        LatencyHistogram h = Metrics.HANDLE_MESSAGE;
+        sb.append("# HELP ludo_handle_message_seconds GameManager.handleMessage latency including lock wait\n");
+        sb.append("# TYPE ludo_handle_message_seconds summary\n");
+        for (double q : QUANTILES) {
+            sb.append("ludo_handle_message_seconds{quantile=\"").append(q).append("\"} ")
+              .append(h.percentile(q) / NANOS_PER_SECOND).append('\n');
+        }
+        sb.append("ludo_handle_message_seconds_sum ").append(h.getSum() / NANOS_PER_SECOND).append('\n');
+        sb.append("ludo_handle_message_seconds_count ").append(h.getCount()).append('\n');
+
+        sb.append("# HELP ludo_room_messages_in_total Messages handled per room\n");
+        sb.append("# TYPE ludo_room_messages_in_total counter\n");
+        for (GameManager room : rooms) {
+            sb.append("ludo_room_messages_in_total{room=\"").append(room.getRoom()).append("\"} ")
+              .append(room.getMessagesIn()).append('\n');
+        }
+        sb.append("# HELP ludo_room_players Seated players per room\n");
+        sb.append("# TYPE ludo_room_players gauge\n");
+        for (GameManager room : rooms) {
+            sb.append("ludo_room_players{room=\"").append(room.getRoom()).append("\"} ")
+              .append(room.getPlayersSnapshot().size()).append('\n');
+        }
+
+        clientFamily(sb, "ludo_client_messages_in_total", "Messages received per connection", "counter", 0);
+        clientFamily(sb, "ludo_client_messages_out_total", "Messages written per connection", "counter", 1);
+        clientFamily(sb, "ludo_client_outbound_pending", "Messages waiting to be written per connection", "gauge", 2);
+        clientFamily(sb, "ludo_client_throttled_total", "Messages dropped by rate limiting per connection", "counter", 3);
+        return sb.toString();
+    }
+
+    String rooms() {
+        StringBuilder sb = new StringBuilder("{\"rooms\":[");
+        boolean firstRoom = true;
+        for (GameManager room : rooms) {
+            if (!firstRoom) sb.append(',');
+            firstRoom = false;
+            sb.append("{\"room\":").append(quote(room.getRoom()))
+              .append(",\"currentTurn\":").append(room.getCurrentTurn())
+              .append(",\"messagesIn\":").append(room.getMessagesIn())
+              .append(",\"players\":[");
+            boolean first = true;
+            for (Player p : room.getPlayersSnapshot()) {
+                if (!first) sb.append(',');
+                first = false;
+                sb.append("{\"id\":").append(p.getId())
+                  .append(",\"name\":").append(quote(p.getName()))
+                  .append(",\"color\":").append(p.getColor())
+                  .append(",\"position\":").append(p.getPosition())
+                  .append(",\"finished\":").append(p.hasFinished())
+                  .append(",\"bot\":").append(room.isBot(p.getId()))
+                  .append('}');
+            }
+            sb.append("],\"connections\":[");
+            first = true;
+            for (ClientHandler ch : room.getClientsSnapshot()) {
+                Player p = ch.getPlayer();
+                if (p == null) continue;
+                if (!first) sb.append(',');
+                first = false;
+                sb.append("{\"id\":").append(p.getId())
+                  .append(",\"messagesIn\":").append(ch.getMessagesIn())
+                  .append(",\"messagesOut\":").append(ch.getMessagesOut())
+                  .append(",\"outboundPending\":").append(ch.getPendingSends())
+                  .append(",\"throttled\":").append(ch.getThrottled())
+                  .append('}');
+            }
+            sb.append("]}");
+        }
+        return sb.append("]}").toString();
+    }
+
+    // Prometheus wants every sample of a family grouped under its HELP/TYPE header
+    private void clientFamily(StringBuilder sb, String name, String help, String type, int field) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        for (GameManager room : rooms) {
+            for (ClientHandler ch : room.getClientsSnapshot()) {
+                Player p = ch.getPlayer();
+                if (p == null) continue;
+                long value = field == 0 ? ch.getMessagesIn() : field == 1 ? ch.getMessagesOut()
+                        : field == 2 ? ch.getPendingSends() : ch.getThrottled();
+                sb.append(name).append("{room=\"").append(room.getRoom()).append("\",player=\"")
+                  .append(p.getId()).append("\"} ").append(value).append('\n');
+            }
+        }
+    }
+
+    private static void counter(StringBuilder sb, String name, String help, long value) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(" counter\n");
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char ch : s.toCharArray()) {
+            if (ch == '"' || ch == '\\') sb.append('\\').append(ch);
+            else if (ch < 0x20) sb.append(String.format("\\u%04x", (int) ch));
+            else sb.append(ch);
+        }
+        return sb.append('"').toString();
+    }
+}
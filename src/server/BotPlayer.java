@@ -4,11 +4,13 @@ package server;
 import java.util.Random;
 
 public class BotPlayer implements Runnable {
+    private int id;
     private String name;
     private GameManager gameManager;
     private Random rand = new Random();
 
-    public BotPlayer(String name, GameManager gameManager) {
+    public BotPlayer(int id, String name, GameManager gameManager) {
+        this.id = id;
         this.name = name;
         this.gameManager = gameManager;
     }
@@ -18,9 +20,11 @@ public class BotPlayer implements Runnable {
         while (true) {
             try {
                 Thread.sleep(2000);
-                if (gameManager.isBotTurn(name)) {
+                if (gameManager.isAbandoned()) break;
+                Metrics.BOT_LOOPS.increment();
+                if (gameManager.isBotTurn(id)) {
                     int dice = rand.nextInt(6) + 1;
-                    gameManager.botMove(name, dice);
+                    gameManager.botMove(id, dice);
                 }
             } catch (InterruptedException e) {
                 break;
@@ -28,6 +32,10 @@ public class BotPlayer implements Runnable {
         }
     }
 
+    public int getId() {
+        return id;
+    }
+
     public String getName() {
         return name;
     }
@@ -0,0 +1,131 @@
+package server;
+
+import model.Message;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Topic-based pub/sub for chat. Channels are "lobby" (every connection on the
+ * server), "room:<name>" (one game room) and "dm:<playerId>" (a player's private
+ * inbox). Subscriber lists are copy-on-write arrays, so fan-out walks a plain
+ * array without locking. Publishing only queues the message for a dispatcher
+ * thread, so the publisher never waits on fan-out, however large the channel.
+ * A channel always uses the same dispatcher, which keeps its messages in order.
+ */
+public class ChatBus {
+    public static final String LOBBY = "lobby";
+
+    /** Receives published messages; deliver must not block. */
+    public interface Subscriber {
+        void deliver(Message msg);
+
+        /** The channels this subscriber is on, kept up to date by the bus. */
+        Set<String> subscriptions();
+    }
+
+    private static final class Channel {
+        volatile Subscriber[] subscribers = new Subscriber[0];
+        boolean closed; // Set under the channel lock once it is empty and unmapped
+    }
+
+    private final ConcurrentHashMap<String, Channel> channels = new ConcurrentHashMap<>();
+    private final ExecutorService[] dispatchers;
+
+    public ChatBus(int dispatcherThreads) {
+        dispatchers = new ExecutorService[dispatcherThreads];
+        for (int i = 0; i < dispatcherThreads; i++) {
+            String name = "chat-dispatch-" + i;
+            dispatchers[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    public static String room(String room) {
+        return "room:" + room;
+    }
+
+    public static String direct(int playerId) {
+        return "dm:" + playerId;
+    }
+
+    public void subscribe(Subscriber subscriber, String name) {
+        while (true) {
+            Channel channel = channels.computeIfAbsent(name, k -> new Channel());
+            synchronized (channel) {
+                if (channel.closed) continue; // Lost a race with the last unsubscribe; use the new one
+                Subscriber[] current = channel.subscribers;
+                for (Subscriber s : current) {
+                    if (s == subscriber) return;
+                }
+                Subscriber[] next = Arrays.copyOf(current, current.length + 1);
+                next[current.length] = subscriber;
+                channel.subscribers = next;
+            }
+            subscriber.subscriptions().add(name);
+            return;
+        }
+    }
+
+    public void unsubscribe(Subscriber subscriber, String name) {
+        subscriber.subscriptions().remove(name);
+        Channel channel = channels.get(name);
+        if (channel == null) return;
+        synchronized (channel) {
+            Subscriber[] current = channel.subscribers;
+            int index = -1;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == subscriber) index = i;
+            }
+            if (index < 0) return;
+            if (current.length == 1) {
+                // Private inboxes come and go with players, so empty channels are dropped
+                channel.closed = true;
+                channel.subscribers = new Subscriber[0];
+                channels.remove(name, channel);
+                return;
+            }
+            Subscriber[] next = new Subscriber[current.length - 1];
+            System.arraycopy(current, 0, next, 0, index);
+            System.arraycopy(current, index + 1, next, index, current.length - index - 1);
+            channel.subscribers = next;
+        }
+    }
+
+    public void unsubscribeAll(Subscriber subscriber) {
+        for (String name : subscriber.subscriptions().toArray(new String[0])) {
+            unsubscribe(subscriber, name);
+        }
+    }
+
+    /** Queues the message for every current subscriber of the channel and returns at once. */
+    public void publish(String name, Message msg) {
+        Channel channel = channels.get(name);
+        if (channel == null) return;
+        Metrics.BUS_PUBLISHED.increment();
+        dispatchers[(name.hashCode() & 0x7fffffff) % dispatchers.length].execute(() -> fanOut(channel, msg));
+    }
+
+    /** Delivers on the calling thread; used by the dispatchers and by benchmarks. */
+    void fanOut(String name, Message msg) {
+        Channel channel = channels.get(name);
+        if (channel != null) fanOut(channel, msg);
+    }
+
+    private static void fanOut(Channel channel, Message msg) {
+        for (Subscriber s : channel.subscribers) {
+            s.deliver(msg);
+        }
+    }
+
+    public int subscriberCount(String name) {
+        Channel channel = channels.get(name);
+        return channel != null ? channel.subscribers.length : 0;
+    }
+}
@@ -0,0 +1,203 @@
+package server;
+
+import util.Log;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Masks banned phrases in chat. Phrases come from a local text file (one per
+ * line, '#' starts a comment) that is polled for changes, so the list can be
+ * edited without a restart. The list is compiled into an Aho-Corasick automaton
+ * on a background thread and swapped in through a volatile field; chat threads
+ * never wait on a rebuild and always see a complete automaton.
+ *
+ * Matching is one case-insensitive pass over the message, and a phrase only
+ * counts when it is not part of a longer word ("class" does not trip "ass").
+ */
+public class ChatFilter {
+    private static final long POLL_SECONDS = 5;
+
+    private final Path file;
+    private volatile Automaton automaton = Automaton.build(Collections.emptyList());
+    private long loadedModified = -1;
+    private long loadedSize = -1;
+
+    public ChatFilter(Path file) {
+        this.file = file;
+        reloadIfChanged(); // The first list is in place before any chat arrives
+        ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "chat-filter-reload");
+            t.setDaemon(true);
+            return t;
+        });
+        poller.scheduleWithFixedDelay(this::reloadIfChanged, POLL_SECONDS, POLL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /** Returns the text with every banned phrase replaced by '*', or the same instance if it is clean. */
+    public String filter(String text) {
+        if (text == null) return null;
+        String masked = automaton.mask(text);
+        if (masked != text) Metrics.CHAT_FILTERED.increment();
+        return masked;
+    }
+
+    private void reloadIfChanged() {
+        try {
+            long modified = Files.exists(file) ? Files.getLastModifiedTime(file).toMillis() : 0;
+            long size = modified != 0 ? Files.size(file) : 0;
+            if (modified == loadedModified && size == loadedSize) return;
+
+            List<String> phrases = new ArrayList<>();
+            if (modified != 0) {
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    String phrase = line.trim();
+                    if (!phrase.isEmpty() && !phrase.startsWith("#")) phrases.add(phrase);
+                }
+            }
+            long start = System.nanoTime();
+            Automaton next = Automaton.build(phrases);
+            automaton = next;
+            loadedModified = modified;
+            loadedSize = size;
+            Log.info("FILTER", "Loaded {} banned phrase(s) into {} states in {} ms",
+                    phrases.size(), next.stateCount(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            Log.warn("FILTER", "Failed to load {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Immutable Aho-Corasick automaton stored in flat arrays. Each state's edges
+     * are a sorted slice of edgeChar/edgeTarget starting at edgeStart[state];
+     * patternLength is the phrase ending at a state (0 if none) and dictLink points
+     * to the nearest state on the failure chain that ends a phrase (-1 if none).
+     */
+    static final class Automaton {
+        private final int[] edgeStart;
+        private final char[] edgeChar;
+        private final int[] edgeTarget;
+        private final int[] fail;
+        private final int[] patternLength;
+        private final int[] dictLink;
+
+        private Automaton(int[] edgeStart, char[] edgeChar, int[] edgeTarget,
+                          int[] fail, int[] patternLength, int[] dictLink) {
+            this.edgeStart = edgeStart;
+            this.edgeChar = edgeChar;
+            this.edgeTarget = edgeTarget;
+            this.fail = fail;
+            this.patternLength = patternLength;
+            this.dictLink = dictLink;
+        }
+
+        static Automaton build(List<String> phrases) {
+            // Trie as (state << 16 | char) -> child, then flattened into sorted edge arrays
+            Map<Long, Integer> children = new HashMap<>();
+            List<Integer> lengths = new ArrayList<>();
+            lengths.add(0);
+            for (String phrase : phrases) {
+                int state = 0;
+                for (int i = 0; i < phrase.length(); i++) {
+                    long key = ((long) state << 16) | Character.toLowerCase(phrase.charAt(i));
+                    Integer child = children.get(key);
+                    if (child == null) {
+                        child = lengths.size();
+                        lengths.add(0);
+                        children.put(key, child);
+                    }
+                    state = child;
+                }
+                if (state != 0) lengths.set(state, phrase.length());
+            }
+
+            int states = lengths.size();
+            long[] keys = new long[children.size()];
+            int k = 0;
+            for (long key : children.keySet()) keys[k++] = key;
+            Arrays.sort(keys);
+
+            int[] edgeStart = new int[states + 1];
+            char[] edgeChar = new char[keys.length];
+            int[] edgeTarget = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                edgeStart[(int) (keys[i] >>> 16) + 1]++;
+                edgeChar[i] = (char) keys[i];
+                edgeTarget[i] = children.get(keys[i]);
+            }
+            for (int s = 0; s < states; s++) edgeStart[s + 1] += edgeStart[s];
+
+            int[] patternLength = new int[states];
+            for (int s = 0; s < states; s++) patternLength[s] = lengths.get(s);
+            int[] fail = new int[states];
+            int[] dictLink = new int[states];
+            Arrays.fill(dictLink, -1);
+            Automaton a = new Automaton(edgeStart, edgeChar, edgeTarget, fail, patternLength, dictLink);
+
+            // Breadth-first so every failure target is finished before it is used
+            int[] queue = new int[states];
+            int head = 0, tail = 0;
+            for (int e = edgeStart[0]; e < edgeStart[1]; e++) queue[tail++] = edgeTarget[e];
+            while (head < tail) {
+                int u = queue[head++];
+                for (int e = edgeStart[u]; e < edgeStart[u + 1]; e++) {
+                    int v = edgeTarget[e];
+                    char c = edgeChar[e];
+                    int f = fail[u];
+                    int next;
+                    while ((next = a.next(f, c)) < 0 && f != 0) f = fail[f];
+                    fail[v] = next >= 0 ? next : 0;
+                    dictLink[v] = patternLength[fail[v]] > 0 ? fail[v] : dictLink[fail[v]];
+                    queue[tail++] = v;
+                }
+            }
+            return a;
+        }
+
+        private int next(int state, char c) {
+            int lo = edgeStart[state], hi = edgeStart[state + 1] - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                char m = edgeChar[mid];
+                if (m < c) lo = mid + 1;
+                else if (m > c) hi = mid - 1;
+                else return edgeTarget[mid];
+            }
+            return -1;
+        }
+
+        String mask(String text) {
+            char[] out = null;
+            int state = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = Character.toLowerCase(text.charAt(i));
+                int next;
+                while ((next = next(state, c)) < 0 && state != 0) state = fail[state];
+                state = next >= 0 ? next : 0;
+
+                for (int s = patternLength[state] > 0 ? state : dictLink[state]; s > 0; s = dictLink[s]) {
+                    int start = i - patternLength[s] + 1;
+                    if (isWordChar(text, start - 1) || isWordChar(text, i + 1)) continue;
+                    if (out == null) out = text.toCharArray();
+                    Arrays.fill(out, start, i + 1, '*');
+                    break; // Longest first, so shorter matches here are already covered
+                }
+            }
+            return out == null ? text : new String(out);
+        }
+
+        private static boolean isWordChar(String text, int index) {
+            return index >= 0 && index < text.length() && Character.isLetterOrDigit(text.charAt(index));
+        }
+
+        int stateCount() {
+            return fail.length;
+        }
+    }
+}
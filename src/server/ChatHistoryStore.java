@@ -0,0 +1,558 @@
+package server;
+
+import model.Message;
+import util.Log;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-side chat history.
+ * Each conversation (a room or a private pair) is written to its own directory
+ * as segmented append-only log files. The newest messages of each conversation
+ * are also kept in a bounded in-memory tail so late joiners are served without
+ * touching disk; older pages are read from the segments on demand by cursor.
+ *
+ * Appending only numbers the message and queues it: a single background
+ * appender writes the segments and flushes once per batch, so chat never does
+ * file I/O on a room's game lock. It keeps at most MAX_OPEN_WRITERS files open
+ * and closes them all after IDLE_MS without chat. At most MAX_CONVERSATIONS
+ * conversations stay in memory; the least recently used one is dropped (and its
+ * files closed) and reloaded from disk if it is needed again. close() writes
+ * out everything queued.
+ *
+ * A conversation this run has just started has nothing on disk and is created
+ * in memory. Any other one (the lobby, or one dropped earlier) is read back by
+ * a load queued on the appender, so it sees every record queued before it and
+ * never blocks the store's lock. Until the load is done the conversation is a
+ * placeholder that holds its appends back and numbers them afterwards; a
+ * message sent live in that window goes out without a sequence number.
+ *
+ * A cursor is a message sequence number: a page contains the messages strictly
+ * older than the cursor, and a cursor of 0 means "newest page".
+ *
+ * Room numbers and session ids start over when the server restarts, so room and
+ * private keys include an id for this run: a new room never inherits an old
+ * room's chat, and a private log belongs to the two sessions that wrote it, not
+ * to whoever later joins under one of their names. Only the lobby spans runs.
+ */
+public class ChatHistoryStore {
+    public static final int TAIL_SIZE = 200;
+    public static final int SEGMENT_SIZE = 1000;
+    public static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_CONVERSATIONS = 512;
+    private static final int MAX_OPEN_WRITERS = 64;
+    private static final int QUEUE_CAPACITY = 65_536; // Records waiting for disk before new ones are dropped
+    private static final int WRITE_BATCH = 512;       // Records written per flush
+    private static final long IDLE_MS = 30_000;
+
+    private final Path root;
+    private final String run; // Distinguishes this server run's rooms and sessions from earlier ones
+    private final Appender appender = new Appender();
+    private boolean closed;   // Guarded by this
+    private final Set<String> evicted = new HashSet<>(); // Keys of this run dropped from memory; guarded by this
+
+    // Every conversation's state is guarded by the store's monitor; appends only touch memory
+    private final Map<String, Conversation> conversations = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Conversation> eldest) {
+            // A conversation still loading holds appends that have not been queued yet
+            if (size() <= MAX_CONVERSATIONS || !eldest.getValue().loaded) return false;
+            appender.closeFiles(eldest.getValue().dir);
+            if (isThisRun(eldest.getKey())) evicted.add(eldest.getKey());
+            return true;
+        }
+    };
+
+    public ChatHistoryStore(Path root) {
+        this.root = root;
+        this.run = Long.toString(System.currentTimeMillis(), 36);
+        appender.start();
+    }
+
+    /** Conversation key for a room's public chat in this run. */
+    public String roomKey(String room) {
+        return "room-" + run + "-" + room;
+    }
+
+    /** Conversation key for the server-wide lobby. */
+    public static String lobbyKey() {
+        return "lobby";
+    }
+
+    /** Conversation key for a private chat between two session ids; the same for both participants. */
+    public String privateKey(int a, int b) {
+        return "dm-" + run + "-" + Math.min(a, b) + "-" + Math.max(a, b);
+    }
+
+    /**
+     * Stores a chat message and stamps it with its sequence number. Live messages
+     * are addressed by session ids, so the stored record keeps the names instead.
+     * Never waits for the disk.
+     */
+    public void append(String key, Message msg, String sender, String recipient) {
+        Message record = new Message(msg.getType(), msg.getContent(), sender, recipient);
+        record.setTimestamp(msg.getTimestamp());
+        Path segment;
+        synchronized (this) {
+            if (closed) return;
+            Conversation c = conversation(key);
+            if (c == null) {
+                appender.dropped.increment();
+                return;
+            }
+            if (!c.loaded) {
+                c.waiting.add(record); // Numbered and queued when the load finishes
+                return;
+            }
+            segment = c.append(record);
+        }
+        appender.write(segment, record);
+        msg.setSequence(record.getSequence());
+    }
+
+    /**
+     * Returns up to {@code limit} messages older than {@code cursor}, oldest first.
+     */
+    public List<Message> fetchPage(String key, long cursor, int limit) {
+        limit = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        long before;
+        long from;
+        List<Path> files;
+        Conversation c;
+        synchronized (this) {
+            c = conversation(key);
+        }
+        if (c == null || !c.awaitLoaded(appender)) return new ArrayList<>();
+        synchronized (this) {
+            before = cursor <= 0 ? c.nextSeq : cursor;
+            from = Math.max(1, before - limit);
+            List<Message> cached = c.fromTail(from, before);
+            if (cached != null) return cached;
+            files = c.segmentsFor(from, before);
+        }
+
+        // Read without the lock; what was asked for may still be waiting in the queue
+        appender.awaitWritten();
+        List<Message> result = new ArrayList<>(limit);
+        try {
+            for (Path segment : files) {
+                for (Message m : readSegment(segment)) {
+                    if (m.getSequence() >= from && m.getSequence() < before) result.add(m);
+                }
+            }
+        } catch (IOException e) {
+            Log.warn("CHAT", "Failed to read history {}: {}", key, e.getMessage());
+        }
+        return result;
+    }
+
+    /** Writes out everything queued and closes every file; later appends are ignored. */
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        appender.shutdown();
+    }
+
+    // Caller holds the store's monitor. Null if the conversation has to be read
+    // back but the appender's queue is too full to take the load
+    private Conversation conversation(String key) {
+        Conversation c = conversations.get(key);
+        if (c != null) return c;
+        c = new Conversation(root.resolve(directoryName(key)));
+        if (isThisRun(key) && !evicted.contains(key)) {
+            c.loaded(); // Started in this run and never written out of memory: nothing to read
+        } else {
+            Conversation loading = c;
+            // Queued behind every record already waiting, including this key's before an eviction
+            if (!appender.run(() -> load(loading))) return null;
+        }
+        conversations.put(key, c);
+        return c;
+    }
+
+    private boolean isThisRun(String key) {
+        return key.startsWith("room-" + run + "-") || key.startsWith("dm-" + run + "-");
+    }
+
+    // Appender thread: reads the files without the lock, then numbers and queues what was held back
+    private void load(Conversation c) {
+        c.open();
+        synchronized (this) {
+            c.loaded();
+            for (Message record : c.waiting) appender.write(c.append(record), record);
+            c.waiting.clear();
+        }
+    }
+
+    private static String directoryName(String key) {
+        StringBuilder sb = new StringBuilder();
+        for (char ch : key.toCharArray()) {
+            sb.append(Character.isLetterOrDigit(ch) && ch < 128 || ch == '-' ? ch : '_');
+        }
+        // Sanitising can make distinct names collide, so keep the original identity in the hash
+        return sb.append('-').append(Integer.toHexString(key.hashCode())).toString();
+    }
+
+    private static class Conversation {
+        final Path dir;
+        final ArrayDeque<Message> tail = new ArrayDeque<>();
+        final TreeMap<Long, Path> segments = new TreeMap<>(); // first seq -> segment file
+        final List<Message> waiting = new ArrayList<>();      // Appends made while loading
+        final CountDownLatch ready = new CountDownLatch(1);
+        long nextSeq = 1;
+        boolean loaded; // Guarded by the store; nothing else is read until it is set
+
+        Conversation(Path dir) {
+            this.dir = dir;
+        }
+
+        void loaded() {
+            loaded = true;
+            ready.countDown();
+        }
+
+        /** Waits, without the store's lock, for the load; false if the appender stopped first. */
+        boolean awaitLoaded(Appender appender) {
+            try {
+                while (!ready.await(100, TimeUnit.MILLISECONDS)) {
+                    if (!appender.thread.isAlive()) return false;
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        // Appender thread, before loaded is set
+        void open() {
+            if (!Files.isDirectory(dir)) return;
+            try {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.log")) {
+                    for (Path f : files) {
+                        String name = f.getFileName().toString();
+                        try {
+                            segments.put(Long.parseLong(name.substring(0, name.length() - 4)), f);
+                        } catch (NumberFormatException ignored) {}
+                    }
+                }
+                if (!segments.isEmpty()) {
+                    List<Message> last = readSegment(segments.lastEntry().getValue());
+                    nextSeq = last.isEmpty() ? segments.lastKey() : last.get(last.size() - 1).getSequence() + 1;
+                    // Warm the tail from the newest messages on disk
+                    long from = Math.max(1, nextSeq - TAIL_SIZE);
+                    for (Path segment : segmentsFor(from, nextSeq)) {
+                        for (Message m : readSegment(segment)) {
+                            if (m.getSequence() >= from) tail.addLast(m);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                Log.warn("CHAT", "Failed to open history {}: {}", dir, e.getMessage());
+            }
+        }
+
+        /** Numbers the message and keeps it in the tail; returns the segment it belongs in. */
+        Path append(Message msg) {
+            msg.setSequence(nextSeq++);
+            tail.addLast(msg);
+            if (tail.size() > TAIL_SIZE) tail.removeFirst();
+
+            if (segments.isEmpty() || msg.getSequence() - segments.lastKey() >= SEGMENT_SIZE) {
+                segments.put(msg.getSequence(), dir.resolve(String.format("%020d.log", msg.getSequence())));
+            }
+            return segments.lastEntry().getValue();
+        }
+
+        /** The page from memory, or null if it reaches back past the tail. */
+        List<Message> fromTail(long from, long before) {
+            if (tail.isEmpty() || tail.peekFirst().getSequence() > from) return null;
+            List<Message> result = new ArrayList<>();
+            for (Message m : tail) {
+                if (m.getSequence() >= from && m.getSequence() < before) result.add(m);
+            }
+            return result;
+        }
+
+        /** Segment files that can hold sequences in [from, before). */
+        List<Path> segmentsFor(long from, long before) {
+            Long first = segments.floorKey(from);
+            if (first == null) first = segments.isEmpty() ? null : segments.firstKey();
+            if (first == null) return Collections.emptyList();
+            return new ArrayList<>(segments.tailMap(first, true).headMap(before, false).values());
+        }
+    }
+
+    private static List<Message> readSegment(Path segment) throws IOException {
+        List<Message> messages = new ArrayList<>();
+        if (!Files.exists(segment)) return messages; // Nothing written to it yet
+        try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Message m = decode(line);
+                if (m != null) messages.add(m);
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * The single writer thread. Records are queued with the segment they go in;
+     * a record with no message closes that directory's files instead, a task
+     * runs once everything before it is on disk, and STOP ends the thread after
+     * everything before it is written.
+     */
+    private static final class Appender implements Runnable {
+        private static final class Pending {
+            final Path segment;
+            final Message record;
+            final Runnable task;
+
+            Pending(Path segment, Message record, Runnable task) {
+                this.segment = segment;
+                this.record = record;
+                this.task = task;
+            }
+        }
+
+        private static final Pending STOP = new Pending(null, null, null);
+
+        private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+        private final AtomicLong queued = new AtomicLong();
+        private final LongAdder dropped = new LongAdder();
+        private final Thread thread = new Thread(this, "chat-history-writer");
+        private long written; // Guarded by this; records taken off the queue and handled
+        private final Set<BufferedWriter> touched = new HashSet<>(); // Written this batch, flushed at its end
+        private long lastDropReport;
+
+        // Open segment writers, least recently used first; only the writer thread touches them
+        private final Map<Path, BufferedWriter> writers = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, BufferedWriter> eldest) {
+                if (size() <= MAX_OPEN_WRITERS) return false;
+                closeQuietly(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+
+        void start() {
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void write(Path segment, Message record) {
+            enqueue(new Pending(segment, record, null));
+        }
+
+        void closeFiles(Path dir) {
+            enqueue(new Pending(dir, null, null));
+        }
+
+        /** Runs the task on the writer thread after everything queued so far; false if the queue is full. */
+        boolean run(Runnable task) {
+            return enqueue(new Pending(null, null, task));
+        }
+
+        private boolean enqueue(Pending p) {
+            if (queue.offer(p)) {
+                queued.incrementAndGet();
+                return true;
+            }
+            dropped.increment();
+            return false;
+        }
+
+        /** Blocks until everything queued before the call has been written. */
+        void awaitWritten() {
+            long target = queued.get();
+            synchronized (this) {
+                while (written < target && thread.isAlive()) {
+                    try {
+                        wait(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+
+        void shutdown() {
+            try {
+                queue.put(STOP);
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            List<Pending> batch = new ArrayList<>(WRITE_BATCH);
+            try {
+                while (true) {
+                    Pending first = queue.poll(IDLE_MS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        closeAll(); // Quiet for a while; reopened on the next message
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, WRITE_BATCH - 1);
+                    boolean stop = false;
+                    for (Pending p : batch) {
+                        if (p == STOP) {
+                            stop = true;
+                        } else if (p.task != null) {
+                            flushTouched(); // The task reads what this batch wrote so far
+                            p.task.run();
+                        } else if (p.record == null) {
+                            closeDirectory(p.segment);
+                        } else {
+                            BufferedWriter w = writer(p.segment);
+                            if (w == null) continue;
+                            try {
+                                w.write(encode(p.record));
+                                w.newLine();
+                                touched.add(w);
+                            } catch (IOException e) {
+                                Log.warn("CHAT", "Failed to write history {}: {}", p.segment, e.getMessage());
+                            }
+                        }
+                    }
+                    flushTouched();
+                    reportDrops();
+                    synchronized (this) {
+                        written += batch.size() - (stop ? 1 : 0);
+                        notifyAll();
+                    }
+                    batch.clear();
+                    if (stop) break;
+                }
+            } catch (InterruptedException ignored) {
+            } finally {
+                closeAll();
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+
+        private void flushTouched() {
+            for (BufferedWriter w : touched) {
+                try {
+                    w.flush();
+                } catch (IOException e) {
+                    Log.warn("CHAT", "Failed to flush history: {}", e.getMessage());
+                }
+            }
+            touched.clear();
+        }
+
+        private BufferedWriter writer(Path segment) {
+            BufferedWriter w = writers.get(segment);
+            if (w != null) return w;
+            closeDirectory(segment.getParent()); // A new segment ends the previous one
+            try {
+                Files.createDirectories(segment.getParent());
+                w = Files.newBufferedWriter(segment, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                writers.put(segment, w);
+                return w;
+            } catch (IOException e) {
+                Log.warn("CHAT", "Failed to open history {}: {}", segment, e.getMessage());
+                return null;
+            }
+        }
+
+        private void closeDirectory(Path dir) {
+            for (Iterator<Map.Entry<Path, BufferedWriter>> it = writers.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Path, BufferedWriter> e = it.next();
+                if (e.getKey().getParent().equals(dir)) {
+                    closeQuietly(e.getKey(), e.getValue());
+                    it.remove();
+                }
+            }
+        }
+
+        private void closeAll() {
+            for (Map.Entry<Path, BufferedWriter> e : writers.entrySet()) closeQuietly(e.getKey(), e.getValue());
+            writers.clear();
+        }
+
+        private void closeQuietly(Path segment, BufferedWriter w) {
+            touched.remove(w); // Closing flushes it
+            try {
+                w.close();
+            } catch (IOException e) {
+                Log.warn("CHAT", "Failed to close history {}: {}", segment, e.getMessage());
+            }
+        }
+
+        private void reportDrops() {
+            long lost = dropped.sum();
+            if (lost == lastDropReport) return;
+            Log.warn("CHAT", "{} history record(s) dropped, writer queue full", lost - lastDropReport);
+            lastDropReport = lost;
+        }
+    }
+
+    // Line format: seq \t timestamp \t type \t sender \t recipient \t content (tabs/newlines escaped)
+    private static String encode(Message msg) {
+        return msg.getSequence() + "\t" + msg.getTimestamp() + "\t" + msg.getType() + "\t"
+                + escape(msg.getPlayerName()) + "\t" + escape(msg.getRecipient()) + "\t"
+                + escape(msg.getContent());
+    }
+
+    private static Message decode(String line) {
+        String[] parts = line.split("\t", 6);
+        if (parts.length != 6) return null; // torn write at the tail
+        try {
+            String recipient = unescape(parts[4]);
+            Message msg = new Message(parts[2], unescape(parts[5]), unescape(parts[3]),
+                    recipient.isEmpty() ? null : recipient);
+            msg.setSequence(Long.parseLong(parts[0]));
+            msg.setTimestamp(parseTimestamp(parts[1]));
+            return msg;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Epoch millis; files written before that stored ISO local date-times
+    private static long parseTimestamp(String s) {
+        if (s.indexOf('T') < 0) return Long.parseLong(s);
+        return LocalDateTime.parse(s).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static String escape(String s) {
+        if (s == null) return "";
+        return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch == '\\' && i + 1 < s.length()) {
+                char next = s.charAt(++i);
+                sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                sb.append(ch);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -2,25 +2,54 @@ package server;
 
 import java.io.*;
 import java.net.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
 import model.*;
+import util.Log;
 
 /**
  * Handles communication between the Ludo server and a single connected client.
  * Each client runs on its own thread. This class manages:
  * - Receiving player JOIN messages
  * - Listening for player actions (like dice rolls)
- * - Sending updates from the server
+ * - Sending updates from the server through an outbound queue drained by a
+ *   per-connection writer thread, so senders never block on a slow socket
  * - Handling disconnections safely
  */
-public class ClientHandler implements Runnable {
+public class ClientHandler implements Runnable, ChatBus.Subscriber {
+    private static final int MAX_PENDING = 10_000; // A client this far behind is dropped, not buffered forever
+    private static final int WRITE_BATCH = 256;    // Messages written per flush
+    private static final int RESET_EVERY = 256;    // Messages between stream resets
 
     private Socket socket;
     private GameManager gameManager;
     private ObjectInputStream in;
     private ObjectOutputStream out;
     private Player player;
-    private boolean connected = true;
-    private boolean isDisconnecting = false;
+    private volatile boolean connected = true;
+    private volatile boolean isDisconnecting = false;
+    private final BlockingQueue<Message> outbound = new LinkedBlockingQueue<>();
+    private final Set<String> subscriptions = ConcurrentHashMap.newKeySet();
+    private Thread writer;
+
+    // Per-connection statistics for the admin endpoint
+    private final LongAdder messagesIn = new LongAdder();
+    private final LongAdder messagesOut = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    private static final long THROTTLE_NOTICE_NANOS = 1_000_000_000L;
+    // Answers to throttled requests, so a client waiting on the reply can give up and retry
+    private static final Message STATE_REJECTED = new Message(Message.STATE, Message.REJECTED, "SERVER");
+    private static final Message USER_LIST_REJECTED = new Message(Message.USER_LIST, Message.REJECTED, "SERVER");
+    private static final Message THROTTLE_NOTICE =
+            new Message("INFO", "⚠️ You're sending messages too fast; some were dropped.", "SERVER");
+    private final RateLimiter limiter = RateLimiter.perConnection();
+    private long lastThrottleNotice;
 
     public ClientHandler(Socket socket, GameManager gameManager) {
         this.socket = socket;
@@ -33,55 +62,145 @@ public class ClientHandler implements Runnable {
             out = new ObjectOutputStream(socket.getOutputStream());
             out.flush();
             in = new ObjectInputStream(socket.getInputStream());
+            Metrics.CONNECTIONS.increment();
+            writer = new Thread(this::writeLoop, "writer-" + socket.getPort());
+            writer.setDaemon(true);
+            writer.start();
 
             // Player joins
             Message joinMsg = (Message) in.readObject();
-            player = new Player(joinMsg.getPlayerName());
+            player = new Player(GameManager.nextPlayerId(), joinMsg.getPlayerName());
             gameManager.addPlayer(player, this);
 
-            System.out.println("[SERVER] Player joined: " + player.getName());
+            Log.info("SERVER", "Player joined: {}", player.getName());
 
             // Continuous listening
             while (connected) {
                 Message msg = (Message) in.readObject();
+                messagesIn.increment();
+                Metrics.MESSAGES_IN.increment();
+                // Checked before any game or chat work; the room's budget is only charged
+                // for messages this connection was itself allowed to send
+                if (!limiter.allow(msg.getType()) || !gameManager.allowTraffic(msg.getType())) {
+                    throttle(msg);
+                    continue;
+                }
+                // Answered here so the round trip measures the connection, not the game lock
+                if (Message.PING.equals(msg.getType())) {
+                    sendMessage(msg);
+                    continue;
+                }
                 gameManager.handleMessage(msg, player);
             }
 
         } catch (EOFException | SocketException e) {
-            System.out.println("[SERVER] Player " +
-                    (player != null ? player.getName() : "unknown") +
-                    " disconnected.");
+            Log.info("SERVER", "Player {} disconnected.", player != null ? player.getName() : "unknown");
         } catch (Exception e) {
-            e.printStackTrace();
+            Log.error("SERVER", "Connection handler failed", e);
         } finally {
             disconnect();
         }
     }
 
-    /** Sends a message from the server to this client. */
-    public synchronized void sendMessage(Message msg) {
-        if (out == null || isDisconnecting) return;
+    // Requests a client waits on (ROLL, STATE, USER_LIST, HISTORY) get an explicit rejection;
+    // other traffic is dropped silently
+    private void throttle(Message msg) {
+        String type = msg.getType();
+        throttled.increment();
+        Metrics.recordThrottled(type);
+        if (Message.ROLL.equals(type)) {
+            sendMessage(GameManager.rollReply(msg, Message.REJECTED));
+        } else if (Message.STATE.equals(type)) {
+            sendMessage(STATE_REJECTED);
+        } else if (Message.USER_LIST.equals(type)) {
+            sendMessage(USER_LIST_REJECTED);
+        } else if (Message.HISTORY.equals(type)) {
+            sendMessage(new Message(Message.HISTORY, Message.REJECTED, GameState.NO_PLAYER, msg.getRecipientId()));
+        }
+        long now = System.nanoTime();
+        if (lastThrottleNotice == 0 || now - lastThrottleNotice >= THROTTLE_NOTICE_NANOS) {
+            lastThrottleNotice = now;
+            sendMessage(THROTTLE_NOTICE);
+        }
+    }
+
+    /** Queues a message for this client; never blocks. */
+    public void sendMessage(Message msg) {
+        if (isDisconnecting) return;
+        if (outbound.size() >= MAX_PENDING) {
+            // Closing the socket makes the reader thread run the normal disconnect path
+            Log.warn("SERVER", "Dropping {}: {} messages unsent", player != null ? player.getName() : "client", outbound.size());
+            closeSocket();
+            return;
+        }
+        outbound.offer(msg);
+    }
+
+    @Override
+    public void deliver(Message msg) {
+        sendMessage(msg);
+    }
+
+    @Override
+    public Set<String> subscriptions() {
+        return subscriptions;
+    }
+
+    // Drains everything queued and flushes once per batch rather than once per message.
+    // The stream remembers every object it has written until reset, so it is reset
+    // every RESET_EVERY messages; in between, repeats of a shared message (a STATE
+    // frame, a constant notice) go out as a few-byte back-reference.
+    private void writeLoop() {
+        List<Message> batch = new ArrayList<>(WRITE_BATCH);
+        int sinceReset = 0;
         try {
-            out.writeObject(msg);
-            out.flush();
+            while (connected) {
+                batch.add(outbound.take());
+                outbound.drainTo(batch, WRITE_BATCH - 1);
+                for (Message msg : batch) {
+                    out.writeObject(msg);
+                    messagesOut.increment();
+                    Metrics.MESSAGES_OUT.increment();
+                }
+                sinceReset += batch.size();
+                if (sinceReset >= RESET_EVERY) {
+                    out.reset();
+                    sinceReset = 0;
+                }
+                out.flush();
+                batch.clear();
+            }
+        } catch (InterruptedException ignored) {
         } catch (IOException e) {
-            disconnect();
+            closeSocket();
         }
     }
 
-    /** Safely closes this client's connection and notifies others. */
+    public Player getPlayer() { return player; }
+    public long getMessagesIn() { return messagesIn.sum(); }
+    public long getMessagesOut() { return messagesOut.sum(); }
+    public int getPendingSends() { return outbound.size(); }
+    public long getThrottled() { return throttled.sum(); }
+
+    private void closeSocket() {
+        try {
+            socket.close();
+        } catch (IOException ignored) {}
+    }
+
+    /** Safely closes this client's connection and notifies others. Runs on the reader thread. */
     private void disconnect() {
         if (isDisconnecting) return;
         isDisconnecting = true;
 
         connected = false;
-        try {
-            if (player != null) {
-                gameManager.removeClient(player.getName());
-                gameManager.broadcast(
-                        new Message("INFO", player.getName() + " has left the game.", "SERVER"));
-            }
-            socket.close();
-        } catch (IOException ignored) {}
+        if (writer != null) writer.interrupt();
+        outbound.clear();
+        if (player != null) {
+            gameManager.removeClient(player.getId());
+            gameManager.broadcast(
+                    new Message("INFO", player.getName() + " has left the game.", "SERVER"));
+        }
+        closeSocket();
     }
 }
\ No newline at end of file
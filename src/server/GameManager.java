@@ -1,75 +1,206 @@
 package server;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import model.*;
+import util.Constants;
+import util.Log;
 
 public class GameManager {
+    private static final AtomicInteger nextPlayerId = new AtomicInteger(1);
+
+    // Lockstep mode (-Dludo.lockstep=true): moves go out as DICE events that every
+    // client replays on its own GameState, instead of a STATE frame plus INFO text.
+    // Every CHECKSUM_INTERVAL-th event carries the position hash so drift is caught.
+    static final boolean LOCKSTEP = Boolean.getBoolean("ludo.lockstep");
+    private static final int CHECKSUM_INTERVAL = 8;
+
+    // Never modified after construction, so one instance is shared by every send
+    private static final Message YOUR_TURN = new Message(Message.YOUR_TURN, "", "SERVER");
+    private static final String[] DICE_FACES = {"0", "1", "2", "3", "4", "5", "6"};
+
     private GameState state = new GameState();
-    private Map<String, ClientHandler> clients = new HashMap<>();
+    private Map<Integer, ClientHandler> clients = new HashMap<>();
+    private Map<Integer, String> names = new HashMap<>(); // Everyone seen in this room, incl. departed
     private List<BotPlayer> bots = new ArrayList<>();
+    private RatingStore ratings;
+    private ChatHistoryStore history;
+    private ChatFilter filter;
+    private ChatBus bus;
+    private final String room;
+    private boolean started = false;
+    private boolean gameOver = false;
+    private long moveNumber; // Moves played; numbers lockstep events and keyframes
+    private GameRecorder recorder; // Null until the game starts, or when not recording
+    private final LongAdder messagesIn = new LongAdder();
+    private final RateLimiter roomLimits = RateLimiter.perRoom();
+    private final PresenceService presence = new PresenceService();
+    private final TypingCoalescer typing = new TypingCoalescer(this);
+
+    public GameManager(String room, RatingStore ratings, ChatHistoryStore history, ChatFilter filter, ChatBus bus) {
+        this.room = room;
+        this.ratings = ratings;
+        this.history = history;
+        this.filter = filter;
+        this.bus = bus;
+    }
+
+    /** Allocates a session id; ids are never reused while the server runs. */
+    public static int nextPlayerId() {
+        return nextPlayerId.getAndIncrement();
+    }
 
     public synchronized void addPlayer(Player player, ClientHandler handler) throws IOException {
         state.addPlayer(player);
-        clients.put(player.getName(), handler);
+        clients.put(player.getId(), handler);
+        names.put(player.getId(), player.getName());
+        handler.sendMessage(new Message(Message.WELCOME, player.getName(), player.getId()));
+        bus.subscribe(handler, ChatBus.LOBBY);
+        bus.subscribe(handler, ChatBus.room(room));
+        bus.subscribe(handler, ChatBus.direct(player.getId()));
         broadcast(new Message("INFO", player.getName() + " joined the game!", "SERVER"));
-        sendUserListToAll();
+
+        // Everyone already here gets a one-row delta; the newcomer subscribes with the full roster
+        Message joined = presence.join(player.getId(), player.getName(), Message.ONLINE);
+        for (ClientHandler ch : clients.values()) {
+            if (ch != handler) ch.sendMessage(joined);
+        }
+        handler.sendMessage(presence.snapshot());
     }
 
-    public synchronized void removeClient(String playerName) {
-        clients.remove(playerName);
-        state.getPlayers().remove(playerName);
-        System.out.println("[SERVER] Removed player: " + playerName);
-        try {
-            sendUserListToAll();
-        } catch (IOException e) {
-            e.printStackTrace();
+    public synchronized void removeClient(int playerId) {
+        ClientHandler handler = clients.remove(playerId);
+        if (handler != null) bus.unsubscribeAll(handler);
+        state.removePlayer(playerId);
+        Log.info("SERVER", "Removed player: {}", names.get(playerId));
+        Message left = presence.leave(playerId);
+        if (left != null) broadcast(left);
+        if (recorder != null) {
+            recorder.leave(playerId);
+            if (clients.isEmpty()) recorder.close(); // Abandoned; nobody will move again
         }
+        // The seat is gone from the engine, so boards (and lockstep replicas) need a fresh keyframe
+        if (started) updateAll();
     }
 
     public synchronized void addBot(BotPlayer bot) {
-        Player p = new Player(bot.getName());
+        Player p = new Player(bot.getId(), bot.getName());
         state.addPlayer(p);
+        names.put(p.getId(), p.getName());
         bots.add(bot);
-        System.out.println("[SERVER] Added bot: " + bot.getName());
+        broadcast(presence.join(p.getId(), p.getName(), Message.BOT));
+        Log.info("SERVER", "Added bot: {}", bot.getName());
     }
 
     public synchronized void startGame() throws IOException {
+        started = true;
+        recorder = GameRecorder.start(Paths.get(Constants.REPLAY_DIR), room, state);
         broadcast(new Message("INFO", "Game Started! 🎮", "SERVER"));
-        sendUserListToAll();
         updateAll();
         nextTurn();
     }
 
-    public synchronized void handleMessage(Message msg, Player p) throws IOException {
+    /** Charges the room-wide budget for a broadcast-type message; needs no game lock. */
+    public boolean allowTraffic(String type) {
+        return roomLimits.allow(type);
+    }
+
+    public void handleMessage(Message msg, Player p) throws IOException {
+        long start = System.nanoTime();
+        messagesIn.increment();
+        try {
+            // History pages may hit disk, so serve them without holding the game lock
+            if (Message.HISTORY.equals(msg.getType())) {
+                sendHistory(msg, p);
+                return;
+            }
+            // Typing is coalesced and fanned out later by the flusher, also without the lock
+            if (Message.TYPING.equals(msg.getType())) {
+                typing.typing(p.getId(), msg.getRecipientId());
+                return;
+            }
+            // Moderation runs before the lock; it is a single pass over the text
+            if (Message.PUBLIC_CHAT.equals(msg.getType()) || Message.PRIVATE_CHAT.equals(msg.getType())
+                    || Message.LOBBY_CHAT.equals(msg.getType())) {
+                msg.setContent(filter.filter(msg.getContent()));
+            }
+            // The lobby spans every room, so it needs nothing from this room's lock
+            if (Message.LOBBY_CHAT.equals(msg.getType())) {
+                publishLobbyChat(msg, p);
+                return;
+            }
+            handleGameMessage(msg, p);
+        } finally {
+            // Includes time spent waiting for the game lock, which is what turn latency feels
+            Metrics.HANDLE_MESSAGE.record(System.nanoTime() - start);
+        }
+    }
+
+    /** The answer to one ROLL: the face or REJECTED, echoing the request's sequence so the client can match it. */
+    static Message rollReply(Message request, String content) {
+        Message reply = new Message(Message.ROLL, content, "SERVER");
+        reply.setSequence(request.getSequence());
+        return reply;
+    }
+
+    private synchronized void handleGameMessage(Message msg, Player p) throws IOException {
         String type = msg.getType();
 
-        if (type.equals(Message.ROLL) && p.getName().equals(state.getCurrentTurn())) {
+        if (type.equals(Message.ROLL) && p.getId() == state.getCurrentTurn()) {
             int dice = (int) (Math.random() * 6 + 1);
-            String result = state.movePlayer(p.getName(), dice);
-            broadcast(new Message("INFO", result, "SERVER"));
-            updateAll();
+            String result = state.movePlayer(p.getId(), dice);
+            // The roller's die is already spinning; land it before the board moves.
+            // Lockstep DICE events carry the face to everyone anyway
+            ClientHandler roller = clients.get(p.getId());
+            if (roller != null && !LOCKSTEP) roller.sendMessage(rollReply(msg, DICE_FACES[dice]));
+            publishMove(p.getId(), dice, result);
+            updateStatus(p.getId());
+            
+            if (checkGameOver()) return;
             
             // If turn didn't change (rolled 6), enable roll again
             if (result.contains("Roll again")) {
-                if (clients.containsKey(p.getName())) {
-                    clients.get(p.getName()).sendMessage(new Message("YOUR_TURN", "", "SERVER"));
+                if (clients.containsKey(p.getId())) {
+                    clients.get(p.getId()).sendMessage(YOUR_TURN);
                 }
             } else {
                 nextTurn();
             }
+        } else if (type.equals(Message.ROLL)) {
+            // Not this player's turn; lets an optimistic client undo its click
+            ClientHandler ch = clients.get(p.getId());
+            if (ch != null) ch.sendMessage(rollReply(msg, Message.REJECTED));
         } else if (type.equals(Message.PUBLIC_CHAT)) {
+            // The connection, not the client, decides who the sender is
+            msg.setPlayerId(p.getId());
             broadcastChat(msg);
         } else if (type.equals(Message.PRIVATE_CHAT)) {
+            msg.setPlayerId(p.getId());
             sendPrivateChat(msg);
+        } else if (type.equals(Message.LEADERBOARD)) {
+            sendLeaderboard(p);
+        } else if (type.equals(Message.STATE)) {
+            // Keyframe request from a client whose board hash did not match
+            Metrics.KEYFRAME_REQUESTS.increment();
+            ClientHandler ch = clients.get(p.getId());
+            if (ch != null) ch.sendMessage(stateFrame(encodeState()));
+        } else if (type.equals(Message.USER_LIST)) {
+            // A client that missed a presence version asks for the full roster again
+            ClientHandler ch = clients.get(p.getId());
+            if (ch != null) ch.sendMessage(presence.snapshot());
         }
     }
 
-    public synchronized void botMove(String botName, int dice) throws IOException {
-        if (botName.equals(state.getCurrentTurn())) {
-            String result = state.movePlayer(botName, dice);
-            broadcast(new Message("INFO", result, "SERVER"));
-            updateAll();
+    public synchronized void botMove(int botId, int dice) throws IOException {
+        if (botId == state.getCurrentTurn()) {
+            String result = state.movePlayer(botId, dice);
+            publishMove(botId, dice, result);
+            updateStatus(botId);
+            
+            if (checkGameOver()) return;
             
             if (!result.contains("Roll again")) {
                 nextTurn();
@@ -77,88 +208,240 @@ public class GameManager {
         }
     }
 
+    private void publishMove(int playerId, int dice, String result) {
+        moveNumber++;
+        if (recorder != null) recorder.move(playerId, dice);
+        if (LOCKSTEP) {
+            Message event = new Message(Message.DICE, DICE_FACES[dice], playerId);
+            event.setSequence(moveNumber);
+            if (moveNumber % CHECKSUM_INTERVAL == 0) event.setStateHash(state.getHash());
+            broadcast(event);
+        } else {
+            broadcast(new Message("INFO", result, "SERVER"));
+            updateAll();
+        }
+    }
+
+    private void updateStatus(int playerId) {
+        Player player = state.getPlayers().get(playerId);
+        if (player == null || !player.hasFinished()) return;
+        Message changed = presence.setStatus(playerId, Message.FINISHED);
+        if (changed != null) broadcast(changed);
+    }
+
     private void nextTurn() throws IOException {
-        String current = state.getCurrentTurn();
-        broadcast(new Message("INFO", "🎲 " + current + "'s turn!", "SERVER"));
+        int current = state.getCurrentTurn();
+        broadcast(new Message("INFO", "🎲 " + names.get(current) + "'s turn!", "SERVER"));
         if (clients.containsKey(current)) {
-            clients.get(current).sendMessage(new Message("YOUR_TURN", "", "SERVER"));
+            clients.get(current).sendMessage(YOUR_TURN);
+        }
+    }
+
+    public String getRoom() { return room; }
+    public long getMessagesIn() { return messagesIn.sum(); }
+
+    /** Copies of the seated players, taken under the game lock, for the admin endpoint. */
+    public synchronized List<Player> getPlayersSnapshot() {
+        List<Player> copy = new ArrayList<>();
+        for (Player p : state.getPlayers().values()) {
+            Player c = new Player(p.getId(), p.getName());
+            c.setColor(p.getColor());
+            c.setPosition(p.getPosition());
+            c.setFinished(p.hasFinished());
+            copy.add(c);
+        }
+        return copy;
+    }
+
+    public synchronized int getCurrentTurn() {
+        return state.getCurrentTurn();
+    }
+
+    public synchronized List<ClientHandler> getClientsSnapshot() {
+        return new ArrayList<>(clients.values());
+    }
+
+    public synchronized boolean isBot(int playerId) {
+        for (BotPlayer bot : bots) {
+            if (bot.getId() == playerId) return true;
+        }
+        return false;
+    }
+
+    /** True once a started room has lost all of its human players; bots stop and the server drops it. */
+    public synchronized boolean isAbandoned() {
+        return started && clients.isEmpty();
+    }
+
+    public synchronized boolean isBotTurn(int botId) {
+        return !gameOver && botId == state.getCurrentTurn();
+    }
+
+    /** Records ratings once the race is decided; returns true if no more turns should be played. */
+    private boolean checkGameOver() {
+        if (gameOver) return true;
+        if (!state.isGameOver()) return false;
+
+        gameOver = true;
+        if (recorder != null) recorder.close();
+        // Bots are named BOT-1.. in every room, so they would pool into one rating each
+        // (and a player calling themselves Bot-1 would take it over); only humans are rated
+        List<Player> standings = state.getStandings();
+        List<String> rated = new ArrayList<>();
+        for (Player p : standings) {
+            if (!isBot(p.getId())) rated.add(p.getName());
         }
+        ratings.recordResult(rated);
+        broadcast(new Message("INFO", "🏆 Game over! Winner: " + standings.get(0).getName(), "SERVER"));
+
+        Message board = new Message(Message.LEADERBOARD, "", "SERVER");
+        board.setUserList(ratings.getLeaderboard(10));
+        broadcast(board);
+        return true;
+    }
+
+    private void sendLeaderboard(Player p) {
+        ClientHandler handler = clients.get(p.getId());
+        if (handler == null) return;
+        String playerName = p.getName();
+        int rank = ratings.getRank(playerName);
+        String summary = rank > 0
+                ? "Your rank: #" + rank + " (" + Math.round(ratings.getRating(playerName)) + ")"
+                : "You are not ranked yet.";
+        Message board = new Message(Message.LEADERBOARD, summary, "SERVER");
+        board.setUserList(ratings.getLeaderboard(10));
+        handler.sendMessage(board);
     }
 
-    public synchronized boolean isBotTurn(String name) {
-        return name.equals(state.getCurrentTurn());
+    // One frame for the whole room: it is read-only once built
+    private void updateAll() {
+        Message frame = stateFrame(encodeState());
+        for (ClientHandler ch : clients.values()) {
+            ch.sendMessage(frame);
+        }
     }
 
-    private void updateAll() throws IOException {
+    /** STATE payload: "id=position:colour," for every seated player. */
+    StringBuilder encodeState() {
         StringBuilder sb = new StringBuilder();
         for (var entry : state.getPlayers().entrySet()) {
             sb.append(entry.getKey()).append("=")
-              .append(entry.getValue().getPosition()).append(",");
-        }
-        for (ClientHandler ch : clients.values()) {
-            ch.sendMessage(new Message("STATE", sb.toString(), "SERVER"));
+              .append(entry.getValue().getPosition()).append(":")
+              .append(entry.getValue().getColor()).append(",");
         }
+        return sb;
+    }
+
+    // The frame names whose turn it is and carries the position's Zobrist hash,
+    // which is everything a client needs to check its copy of the board
+    private Message stateFrame(StringBuilder encoded) {
+        Message frame = new Message(Message.STATE, encoded.toString(), state.getCurrentTurn());
+        frame.setStateHash(state.getHash());
+        frame.setSequence(moveNumber);
+        return frame;
     }
 
     public synchronized void broadcast(Message msg) {
-        List<String> toRemove = new ArrayList<>();
-        for (Map.Entry<String, ClientHandler> entry : clients.entrySet()) {
+        List<Integer> toRemove = null; // Almost always empty, so only allocated on failure
+        for (Map.Entry<Integer, ClientHandler> entry : clients.entrySet()) {
             try {
                 entry.getValue().sendMessage(msg);
             } catch (Exception e) {
+                if (toRemove == null) toRemove = new ArrayList<>();
                 toRemove.add(entry.getKey());
             }
         }
-        for (String name : toRemove) {
-            removeClient(name);
+        if (toRemove == null) return;
+        for (int id : toRemove) {
+            removeClient(id);
         }
     }
 
     private void broadcastChat(Message chatMsg) {
-        System.out.println("[CHAT] Public from " + chatMsg.getPlayerName() + ": " + chatMsg.getContent());
-        for (ClientHandler ch : clients.values()) {
-            try {
-                ch.sendMessage(chatMsg);
-            } catch (Exception e) {
-                System.err.println("[CHAT] Failed to send to client: " + e.getMessage());
-            }
-        }
+        String sender = names.get(chatMsg.getPlayerId());
+        history.append(history.roomKey(room), chatMsg, sender, null);
+        Log.info("CHAT", "Public from {}: {}", sender, Log.chat(chatMsg.getContent()));
+        bus.publish(ChatBus.room(room), chatMsg);
+    }
+
+    // Readers in other rooms have no roster entry for the sender, so the name travels with it
+    private void publishLobbyChat(Message chatMsg, Player p) {
+        chatMsg.setPlayerId(p.getId());
+        chatMsg.setPlayerName(p.getName());
+        chatMsg.setRecipientId(Message.LOBBY_CONVERSATION);
+        history.append(ChatHistoryStore.lobbyKey(), chatMsg, p.getName(), null);
+        Log.info("CHAT", "Lobby from {}: {}", p.getName(), Log.chat(chatMsg.getContent()));
+        bus.publish(ChatBus.LOBBY, chatMsg);
     }
 
     private void sendPrivateChat(Message chatMsg) {
-        String recipient = chatMsg.getRecipient();
-        String sender = chatMsg.getPlayerName();
-        System.out.println("[CHAT] Private from " + sender + " to " + recipient + ": " + chatMsg.getContent());
+        String recipient = names.get(chatMsg.getRecipientId());
+        String sender = names.get(chatMsg.getPlayerId());
+        if (recipient == null) return;
+        history.append(history.privateKey(chatMsg.getPlayerId(), chatMsg.getRecipientId()), chatMsg, sender, recipient);
+        Log.info("CHAT", "Private from {} to {}: {}", sender, recipient, Log.chat(chatMsg.getContent()));
         
-        ClientHandler recipientHandler = clients.get(recipient);
-        if (recipientHandler != null) {
-            try {
-                recipientHandler.sendMessage(chatMsg);
-            } catch (Exception e) {
-                System.err.println("[CHAT] Failed to send to recipient: " + e.getMessage());
-            }
+        bus.publish(ChatBus.direct(chatMsg.getRecipientId()), chatMsg);
+        if (chatMsg.getRecipientId() != chatMsg.getPlayerId()) {
+            bus.publish(ChatBus.direct(chatMsg.getPlayerId()), chatMsg);
         }
-        
-        ClientHandler senderHandler = clients.get(sender);
-        if (senderHandler != null) {
-            try {
-                senderHandler.sendMessage(chatMsg);
-            } catch (Exception e) {
-                System.err.println("[CHAT] Failed to send to sender: " + e.getMessage());
-            }
+    }
+
+    /**
+     * Delivers one coalesced typing update: for the room chat (0) to everyone in
+     * the room, otherwise only to the private-chat recipient's inbox. The lobby
+     * gets no typing updates; at its size they would swamp real chat.
+     * Clients ignore their own id.
+     */
+    void sendTyping(int conversation, int[] typers) {
+        if (conversation < GameState.NO_PLAYER) return;
+        synchronized (this) {
+            // Private typing stays within the room, like private chat
+            if (conversation != GameState.NO_PLAYER && !clients.containsKey(conversation)) return;
         }
+        Message msg = new Message(Message.TYPING, "", GameState.NO_PLAYER, conversation);
+        msg.setUserIds(typers);
+        String channel = conversation == GameState.NO_PLAYER ? ChatBus.room(room) : ChatBus.direct(conversation);
+        bus.publish(channel, msg);
     }
 
-    private void sendUserListToAll() throws IOException {
-        String[] userNames = clients.keySet().toArray(new String[0]);
-        Message userListMsg = new Message(Message.USER_LIST, "", "SERVER");
-        userListMsg.setUserList(userNames);
-        for (ClientHandler ch : clients.values()) {
-            try {
-                ch.sendMessage(userListMsg);
-            } catch (Exception e) {
-                System.err.println("[SERVER] Failed to send user list: " + e.getMessage());
-            }
+    /**
+     * Replies with one page of chat history. The request's recipient id selects the
+     * conversation (0 = room chat, -1 = lobby) and its content is the cursor; the reply's
+     * content is the cursor for the next older page, or "0" when there is none.
+     * A private log is keyed by both session ids, so a session can only read
+     * conversations it took part in, and only with someone in this room.
+     * Stored messages carry names for display, since ids do not survive restarts.
+     */
+    private void sendHistory(Message request, Player p) {
+        ClientHandler handler;
+        String peer;
+        synchronized (this) {
+            handler = clients.get(p.getId());
+            peer = names.get(request.getRecipientId());
+        }
+        if (handler == null) return;
+
+        int peerId = request.getRecipientId();
+        String key;
+        if (peerId == GameState.NO_PLAYER) {
+            key = history.roomKey(room);
+        } else if (peerId == Message.LOBBY_CONVERSATION) {
+            key = ChatHistoryStore.lobbyKey();
+        } else if (peer != null) {
+            key = history.privateKey(p.getId(), peerId);
+        } else {
+            return;
         }
+        long cursor = 0;
+        try {
+            cursor = Long.parseLong(request.getContent());
+        } catch (NumberFormatException ignored) {}
+
+        List<Message> page = history.fetchPage(key, cursor, 50);
+        long next = page.isEmpty() ? 0 : page.get(0).getSequence();
+        Message reply = new Message(Message.HISTORY, String.valueOf(next <= 1 ? 0 : next), GameState.NO_PLAYER, peerId);
+        reply.setHistory(page.toArray(new Message[0]));
+        handler.sendMessage(reply);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,106 @@
+package server;
+
+import model.GameState;
+import model.Player;
+import model.Replay;
+import util.Log;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Writes one room's game in the {@link Replay} format, for the client's replay
+ * viewer. Called under the room's lock, so it does no I/O there: each record is
+ * handed to a shared writer thread, which creates the file, appends the lines
+ * in order and saves it on close. Any write error stops the recording; the
+ * game itself carries on.
+ */
+class GameRecorder {
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("ludo.replays", "true"));
+
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "replay-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Path file;
+    private BufferedWriter writer; // Writer thread only; null until opened, after close or after an error
+
+    private GameRecorder(Path file) {
+        this.file = file;
+    }
+
+    /** Starts a file for a game about to begin; returns null if recording is off. */
+    static GameRecorder start(Path dir, String room, GameState state) {
+        if (!ENABLED) return null;
+        GameRecorder recorder = new GameRecorder(dir.resolve("room-" + room + "-" + System.currentTimeMillis() + ".replay"));
+        // The header is taken now, while the caller holds the lock on state
+        StringBuilder header = new StringBuilder(Replay.MAGIC).append('\n');
+        for (Player p : state.getPlayers().values()) {
+            String name = p.getName().replace('\n', ' ').replace('\r', ' '); // One line per record
+            header.append(Replay.PLAYER).append(' ').append(p.getId()).append(' ').append(p.getColor())
+                    .append(' ').append(name).append('\n');
+        }
+        header.append(Replay.START).append(' ').append(state.getCurrentTurn());
+        String lines = header.toString();
+        WRITER.execute(() -> recorder.open(dir, room, lines));
+        return recorder;
+    }
+
+    void move(int playerId, int dice) {
+        String line = Replay.MOVE + " " + playerId + " " + dice;
+        WRITER.execute(() -> write(line));
+    }
+
+    void leave(int playerId) {
+        String line = Replay.LEAVE + " " + playerId;
+        WRITER.execute(() -> write(line));
+    }
+
+    void close() {
+        WRITER.execute(this::save);
+    }
+
+    private void open(Path dir, String room, String header) {
+        try {
+            Files.createDirectories(dir);
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            Log.warn("REPLAY", "Not recording room {}: {}", room, e.getMessage());
+            return;
+        }
+        write(header);
+    }
+
+    private void save() {
+        if (writer == null) return;
+        try {
+            writer.close();
+            Log.info("REPLAY", "Saved {}", file);
+        } catch (IOException e) {
+            Log.warn("REPLAY", "Failed to save {}: {}", file, e.getMessage());
+        }
+        writer = null;
+    }
+
+    private void write(String line) {
+        if (writer == null) return;
+        try {
+            writer.write(line);
+            writer.newLine();
+        } catch (IOException e) {
+            Log.warn("REPLAY", "Stopped recording {}: {}", file, e.getMessage());
+            try {
+                writer.close();
+            } catch (IOException ignored) {
+            }
+            writer = null;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the style of HdrHistogram.
+ * Values below SUB_COUNT get a slot each; above that every power of two is split
+ * into HALF (16) sub-buckets, giving roughly 6% worst-case error up to MAX_VALUE.
+ * That makes a fixed array of BUCKETS = index(MAX_VALUE) + 1 slots, 524 for one
+ * minute in nanoseconds.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;       // Values below this are exact
+    private static final int HALF = SUB_COUNT >> 1;
+    private static final long MAX_VALUE = 60_000_000_000L;     // One minute in nanoseconds
+    private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    public void record(long nanos) {
+        long v = Math.max(0, Math.min(nanos, MAX_VALUE));
+        counts.incrementAndGet(index(v));
+        count.increment();
+        sum.add(v);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /** Upper bound of the bucket containing the {@code q} quantile, in nanoseconds. */
+    public long percentile(double q) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return 0;
+
+        long target = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target) return upperBound(i);
+        }
+        return MAX_VALUE;
+    }
+
+    private static int index(long v) {
+        if (v < SUB_COUNT) return (int) v;
+        int shift = 63 - Long.numberOfLeadingZeros(v) - (SUB_BITS - 1);
+        return (shift << (SUB_BITS - 1)) + (int) (v >>> shift);
+    }
+
+    private static long upperBound(int i) {
+        if (i < SUB_COUNT) return i;
+        int shift = (i >> (SUB_BITS - 1)) - 1;
+        long mantissa = (i & (HALF - 1)) + HALF;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
@@ -1,49 +1,89 @@
 package server;
 
 import util.Constants;
+import util.Log;
 import java.net.*;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class LudoServer {
-    private static final List<ClientHandler> clients = new ArrayList<>();
-    private static final GameManager gameManager = new GameManager();
+    private static final int ACCEPT_BACKLOG = 1024; // Load tests connect thousands of sessions at once
 
+    private static final RatingStore ratings = new RatingStore(Paths.get(Constants.RATINGS_FILE));
+    private static final ChatHistoryStore chatHistory = new ChatHistoryStore(Paths.get(Constants.CHAT_HISTORY_DIR));
+    private static final ChatFilter chatFilter = new ChatFilter(Paths.get(Constants.BANNED_PHRASES_FILE));
+    private static final ChatBus chatBus = new ChatBus(2);
+    private static final List<GameManager> rooms = new CopyOnWriteArrayList<>();
+
+    /** Optional first argument: players per room (1–4), which skips the console prompt. */
     public static void main(String[] args) {
-        try (ServerSocket serverSocket = new ServerSocket(Constants.SERVER_PORT)) {
+        try (ServerSocket serverSocket = new ServerSocket(Constants.SERVER_PORT, ACCEPT_BACKLOG)) {
             System.out.println("=== LUDO SERVER STARTED ===");
-            @SuppressWarnings("resource")
-            Scanner sc = new Scanner(System.in);
-            System.out.print("Enter number of players (1–4): ");
-            int playerCount = Math.max(1, Math.min(4, sc.nextInt()));
-
-            System.out.println("Waiting for " + playerCount + " player(s) to connect...");
-
-            while (clients.size() < playerCount) {
-                Socket socket = serverSocket.accept();
-                System.out.println("Player connected from: " + socket.getInetAddress());
-                ClientHandler handler = new ClientHandler(socket, gameManager);
-                clients.add(handler);
-                new Thread(handler).start();
+            // Chat history is written behind the game; whatever is still queued goes out on exit
+            Runtime.getRuntime().addShutdownHook(new Thread(chatHistory::close, "chat-history-flush"));
+            Runtime.getRuntime().addShutdownHook(new Thread(ratings::close, "ratings-flush"));
+            try {
+                new AdminServer(rooms).start(Constants.ADMIN_PORT);
+            } catch (java.io.IOException e) {
+                Log.warn("ADMIN", "Admin endpoint unavailable: {}", e.getMessage());
             }
-
-            // Add bots if needed
-            int botsToAdd = 4 - playerCount;
-            for (int i = 1; i <= botsToAdd; i++) {
-                BotPlayer bot = new BotPlayer("BOT-" + i, gameManager);
-                gameManager.addBot(bot);
-                new Thread(bot).start();
+            int playerCount;
+            if (args.length > 0) {
+                playerCount = Integer.parseInt(args[0]);
+            } else {
+                @SuppressWarnings("resource")
+                Scanner sc = new Scanner(System.in);
+                System.out.print("Enter number of players (1–4): ");
+                playerCount = sc.nextInt();
             }
+            playerCount = Math.max(1, Math.min(4, playerCount));
 
-            // Wait 2 seconds to ensure clients finish JOIN handshake
-            try {
-                Thread.sleep(2000);
-            } catch (InterruptedException ignored) {
+            System.out.println("Waiting for " + playerCount + " player(s) per room...");
+
+            // Every playerCount connections fill a room; the next connection opens a new one
+            int roomNumber = 1;
+            while (true) {
+                GameManager room = new GameManager(String.valueOf(roomNumber++), ratings, chatHistory, chatFilter, chatBus);
+                rooms.add(room);
+
+                for (int joined = 0; joined < playerCount; joined++) {
+                    Socket socket = serverSocket.accept();
+                    Log.info("SERVER", "Player connected from: {} (room {})", socket.getInetAddress(), room.getRoom());
+                    new Thread(new ClientHandler(socket, room)).start();
+                }
+
+                int humans = playerCount;
+                new Thread(() -> startRoom(room, humans), "room-" + room.getRoom() + "-start").start();
+                rooms.removeIf(GameManager::isAbandoned);
             }
 
-            gameManager.startGame();
+        } catch (Exception e) {
+            Log.error("SERVER", "Server failed", e);
+        }
+    }
+
+    // Runs off the accept thread so the next room can fill while this one settles
+    private static void startRoom(GameManager room, int playerCount) {
+        // Add bots if needed
+        int botsToAdd = 4 - playerCount;
+        for (int i = 1; i <= botsToAdd; i++) {
+            BotPlayer bot = new BotPlayer(GameManager.nextPlayerId(), "BOT-" + i, room);
+            room.addBot(bot);
+            new Thread(bot).start();
+        }
+
+        // Wait 2 seconds to ensure clients finish JOIN handshake
+        try {
+            Thread.sleep(2000);
+        } catch (InterruptedException ignored) {
+        }
 
+        try {
+            room.startGame();
+            Log.info("SERVER", "Room {} started", room.getRoom());
         } catch (Exception e) {
-            e.printStackTrace();
+            Log.error("SERVER", "Failed to start room {}", room.getRoom(), e);
         }
     }
 }
@@ -0,0 +1,40 @@
+package server;
+
+import model.Message;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-wide counters and histograms. Recording is a single LongAdder or
+ * atomic increment so it is safe to call from inside the game lock.
+ * Per-room and per-connection counters live on GameManager and ClientHandler.
+ */
+public class Metrics {
+    public static final LatencyHistogram HANDLE_MESSAGE = new LatencyHistogram();
+    public static final LongAdder MESSAGES_IN = new LongAdder();
+    public static final LongAdder MESSAGES_OUT = new LongAdder();
+    public static final LongAdder BOT_LOOPS = new LongAdder();
+    public static final LongAdder CONNECTIONS = new LongAdder();
+    public static final LongAdder CHAT_FILTERED = new LongAdder();
+    public static final LongAdder BUS_PUBLISHED = new LongAdder();
+    public static final LongAdder KEYFRAME_REQUESTS = new LongAdder();
+
+    // Rate-limited messages by type; unknown types share "other" so clients cannot grow the label set
+    private static final String OTHER = "other";
+    public static final Map<String, LongAdder> THROTTLED = new LinkedHashMap<>();
+    static {
+        for (String type : new String[]{Message.ROLL, Message.PUBLIC_CHAT, Message.PRIVATE_CHAT,
+                Message.LOBBY_CHAT, Message.TYPING, Message.HISTORY, Message.LEADERBOARD, OTHER}) {
+            THROTTLED.put(type, new LongAdder());
+        }
+    }
+
+    public static void recordThrottled(String type) {
+        LongAdder counter = type != null ? THROTTLED.get(type) : null;
+        (counter != null ? counter : THROTTLED.get(OTHER)).increment();
+    }
+
+    private Metrics() {}
+}
@@ -0,0 +1,70 @@
+package server;
+
+import model.Message;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Versioned roster for one room. Every change bumps the version and produces a
+ * PRESENCE delta holding only the affected row (content JOINED, LEFT or STATUS),
+ * so a join or leave costs one small message per client instead of the full
+ * list. A complete USER_LIST snapshot goes out only when a client first
+ * subscribes, or when it asks to resync after seeing a gap in versions.
+ * Callers hold the room's game lock.
+ */
+public class PresenceService {
+    private final Map<Integer, String[]> roster = new LinkedHashMap<>(); // id -> {name, status}
+    private long version;
+
+    public Message join(int id, String name, String status) {
+        roster.put(id, new String[]{name, status});
+        return delta(Message.JOINED, id, name, status);
+    }
+
+    /** Returns null if the player was not on the roster. */
+    public Message leave(int id) {
+        String[] row = roster.remove(id);
+        return row != null ? delta(Message.LEFT, id, row[0], row[1]) : null;
+    }
+
+    /** Returns null if the status did not change. */
+    public Message setStatus(int id, String status) {
+        String[] row = roster.get(id);
+        if (row == null || status.equals(row[1])) return null;
+        row[1] = status;
+        return delta(Message.STATUS, id, row[0], status);
+    }
+
+    /** The full roster as a USER_LIST stamped with the current version. */
+    public Message snapshot() {
+        int[] ids = new int[roster.size()];
+        String[] names = new String[ids.length];
+        String[] statuses = new String[ids.length];
+        int i = 0;
+        for (Map.Entry<Integer, String[]> e : roster.entrySet()) {
+            ids[i] = e.getKey();
+            names[i] = e.getValue()[0];
+            statuses[i++] = e.getValue()[1];
+        }
+        Message msg = new Message(Message.USER_LIST, "", "SERVER");
+        msg.setUserIds(ids);
+        msg.setUserList(names);
+        msg.setStatuses(statuses);
+        msg.setVersion(version);
+        return msg;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    private Message delta(String event, int id, String name, String status) {
+        Message msg = new Message(Message.PRESENCE, event, "SERVER");
+        msg.setUserIds(new int[]{id});
+        msg.setUserList(new String[]{name});
+        msg.setStatuses(new String[]{status});
+        msg.setVersion(++version);
+        return msg;
+    }
+}
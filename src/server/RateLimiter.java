@@ -0,0 +1,57 @@
+package server;
+
+import model.Message;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A set of token buckets, one per message type. Each connection gets its own
+ * limiter, and each room shares one for the traffic that fans out to everyone
+ * in it, so a single client can never spend the whole room's budget.
+ * Buckets are created up front and never change, so lookups need no locking.
+ */
+public class RateLimiter {
+    private final Map<String, TokenBucket> buckets = new HashMap<>();
+    private final TokenBucket other; // Any type without its own bucket; null = unlimited
+
+    private RateLimiter(TokenBucket other) {
+        this.other = other;
+    }
+
+    /** Limits for a single connection. */
+    public static RateLimiter perConnection() {
+        RateLimiter limiter = new RateLimiter(new TokenBucket(20, 10));
+        limiter.limit(Message.ROLL, 5, 2);
+        limiter.limit(Message.PUBLIC_CHAT, 5, 1);
+        limiter.limit(Message.PRIVATE_CHAT, 5, 1);
+        limiter.limit(Message.LOBBY_CHAT, 3, 0.5);
+        limiter.limit(Message.TYPING, 5, 3);
+        limiter.limit(Message.HISTORY, 5, 2);
+        limiter.limit(Message.LEADERBOARD, 3, 0.5);
+        limiter.limit(Message.USER_LIST, 3, 1);
+        limiter.limit(Message.STATE, 3, 1);
+        limiter.limit(Message.PING, 3, 2);
+        return limiter;
+    }
+
+    /** Limits shared by everyone in a room, covering the messages that are broadcast. */
+    public static RateLimiter perRoom() {
+        RateLimiter limiter = new RateLimiter(null);
+        limiter.limit(Message.PUBLIC_CHAT, 20, 8);
+        limiter.limit(Message.PRIVATE_CHAT, 20, 8);
+        limiter.limit(Message.TYPING, 20, 12);
+        return limiter;
+    }
+
+    private void limit(String type, double burst, double perSecond) {
+        buckets.put(type, new TokenBucket(burst, perSecond));
+    }
+
+    /** Takes a token for {@code type}; false means the message should be dropped. */
+    public boolean allow(String type) {
+        TokenBucket bucket = type != null ? buckets.get(type) : null;
+        if (bucket == null) bucket = other;
+        return bucket == null || bucket.tryAcquire();
+    }
+}
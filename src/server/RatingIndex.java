@@ -0,0 +1,94 @@
+package server;
+
+import java.util.*;
+
+/**
+ * Order-statistic index over player ratings.
+ * Ratings are bucketed to whole points and counted in a Fenwick tree, so
+ * "rank of player X" and locating the k-th best player are O(log R) where
+ * R is the rating range, independent of how many players are stored.
+ */
+public class RatingIndex {
+    public static final int MAX_RATING = 4095;
+
+    // Fenwick tree indexed by (MAX_RATING - rating + 1) so prefix sums count better-rated players
+    private final int[] tree = new int[MAX_RATING + 2];
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final Set<String>[] buckets = new Set[MAX_RATING + 1];
+    private final Map<String, Integer> bucketOf = new HashMap<>();
+
+    public void put(String name, double rating) {
+        int bucket = toBucket(rating);
+        Integer old = bucketOf.put(name, bucket);
+        if (old != null) {
+            if (old == bucket) return;
+            buckets[old].remove(name);
+            add(old, -1);
+        }
+        if (buckets[bucket] == null) buckets[bucket] = new LinkedHashSet<>();
+        buckets[bucket].add(name);
+        add(bucket, 1);
+    }
+
+    /** 1-based rank of the player (ties share a rank), or -1 if unknown. */
+    public int rankOf(String name) {
+        Integer bucket = bucketOf.get(name);
+        if (bucket == null) return -1;
+        return prefix(slot(bucket) - 1) + 1;
+    }
+
+    /** Names of the best {@code n} players, highest rating first. */
+    public List<String> top(int n) {
+        List<String> result = new ArrayList<>(Math.min(n, size()));
+        int rank = 1;
+        while (result.size() < n && rank <= size()) {
+            int bucket = bucketAtRank(rank);
+            for (String name : buckets[bucket]) {
+                if (result.size() == n) break;
+                result.add(name);
+            }
+            rank += buckets[bucket].size();
+        }
+        return result;
+    }
+
+    public int size() {
+        return bucketOf.size();
+    }
+
+    private int bucketAtRank(int rank) {
+        // Standard Fenwick descent: smallest slot whose prefix sum reaches rank
+        int pos = 0;
+        int remaining = rank;
+        for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+            int next = pos + step;
+            if (next < tree.length && tree[next] < remaining) {
+                pos = next;
+                remaining -= tree[next];
+            }
+        }
+        return MAX_RATING - pos;
+    }
+
+    private void add(int bucket, int delta) {
+        for (int i = slot(bucket); i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    private int prefix(int i) {
+        int sum = 0;
+        for (; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    private static int slot(int bucket) {
+        return MAX_RATING - bucket + 1;
+    }
+
+    private static int toBucket(double rating) {
+        return (int) Math.max(0, Math.min(MAX_RATING, Math.round(rating)));
+    }
+}
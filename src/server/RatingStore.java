@@ -0,0 +1,200 @@
+package server;
+
+import util.Log;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent Elo ratings for everyone who has finished a game.
+ * Every rating change is appended to a local log file (one
+ * "key\tname\trating\tgames" line per update, text fields escaped); on startup
+ * the log is replayed and the latest line per player wins. Rankings are served
+ * from an in-memory {@link RatingIndex}. recordResult only updates memory and
+ * hands the finished lines to a background writer, so the room's lock never
+ * waits on the file; close() writes out whatever is still queued.
+ *
+ * Session ids do not outlive a server run, so a player is identified by their
+ * name's key: trimmed, Unicode-normalised and case-folded, so "Bob" and " bob"
+ * are one player. The name shown is the one they last finished a game under.
+ * Lines from before keys were written ("name\trating\tgames") still load.
+ */
+public class RatingStore {
+    public static final double DEFAULT_RATING = 1500.0;
+    private static final double K_FACTOR = 32.0;
+
+    private final Path file;
+    private final Map<String, Entry> ratings = new HashMap<>(); // key -> entry
+    private final RatingIndex index = new RatingIndex();       // By key
+    private final ExecutorService appender = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ratings-writer");
+        t.setDaemon(true);
+        return t;
+    });
+    private BufferedWriter writer; // Appender thread only
+
+    private static final class Entry {
+        String name;
+        double rating = DEFAULT_RATING;
+        long games;
+
+        Entry(String name) {
+            this.name = name;
+        }
+    }
+
+    public RatingStore(Path file) {
+        this.file = file;
+        load();
+    }
+
+    /** The stable identity a display name is rated under. */
+    static String keyOf(String name) {
+        return Normalizer.normalize(name.trim(), Normalizer.Form.NFC).toLowerCase(Locale.ROOT);
+    }
+
+    private void load() {
+        if (!Files.exists(file)) return;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", -1);
+                if (parts.length != 3 && parts.length != 4) continue; // torn write at the tail
+                int at = parts.length - 3;
+                try {
+                    String name = unescape(parts[at]);
+                    String key = at == 0 ? keyOf(name) : unescape(parts[0]);
+                    Entry entry = ratings.computeIfAbsent(key, k -> new Entry(name));
+                    entry.name = name;
+                    entry.rating = Double.parseDouble(parts[at + 1]);
+                    entry.games = (long) Double.parseDouble(parts[at + 2]);
+                    index.put(key, entry.rating);
+                } catch (NumberFormatException ignored) {}
+            }
+            Log.info("RATINGS", "Loaded {} player rating(s) from {}", ratings.size(), file);
+        } catch (IOException e) {
+            Log.warn("RATINGS", "Failed to load {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Applies a finished game. {@code standings} is ordered from first place to
+     * last; every player is treated as having beaten everyone below them.
+     */
+    public synchronized void recordResult(List<String> standings) {
+        int n = standings.size();
+        if (n < 2) return;
+
+        double[] before = new double[n];
+        for (int i = 0; i < n; i++) {
+            before[i] = getRating(standings.get(i));
+        }
+
+        StringBuilder lines = new StringBuilder();
+        double k = K_FACTOR / (n - 1);
+        for (int i = 0; i < n; i++) {
+            double delta = 0;
+            for (int j = 0; j < n; j++) {
+                if (i == j) continue;
+                double expected = 1.0 / (1.0 + Math.pow(10, (before[j] - before[i]) / 400.0));
+                double score = i < j ? 1.0 : 0.0;
+                delta += k * (score - expected);
+            }
+            String name = standings.get(i).trim();
+            String key = keyOf(name);
+            Entry entry = ratings.computeIfAbsent(key, x -> new Entry(name));
+            entry.name = name;
+            entry.rating = before[i] + delta;
+            entry.games++;
+            index.put(key, entry.rating);
+            lines.append(escape(key)).append('\t').append(escape(entry.name)).append('\t')
+                    .append(entry.rating).append('\t').append(entry.games).append(System.lineSeparator());
+        }
+        String batch = lines.toString();
+        try {
+            appender.execute(() -> append(batch));
+        } catch (RejectedExecutionException e) {
+            Log.warn("RATINGS", "Not saving ratings after close: {}", standings);
+        }
+    }
+
+    /** Writes out every queued update and closes the file; later results stay in memory only. */
+    public void close() {
+        appender.shutdown();
+        try {
+            if (!appender.awaitTermination(5, TimeUnit.SECONDS)) {
+                Log.warn("RATINGS", "Timed out saving {}", file);
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            if (writer != null) writer.close();
+        } catch (IOException e) {
+            Log.warn("RATINGS", "Failed to close {}: {}", file, e.getMessage());
+        }
+    }
+
+    public synchronized double getRating(String name) {
+        Entry entry = ratings.get(keyOf(name));
+        return entry != null ? entry.rating : DEFAULT_RATING;
+    }
+
+    /** 1-based leaderboard position, or -1 if the player has never been rated. */
+    public synchronized int getRank(String name) {
+        return index.rankOf(keyOf(name));
+    }
+
+    /** Top {@code n} players formatted as "1. name (1532)". */
+    public synchronized String[] getLeaderboard(int n) {
+        List<String> keys = index.top(n);
+        String[] rows = new String[keys.size()];
+        for (int i = 0; i < rows.length; i++) {
+            Entry entry = ratings.get(keys.get(i));
+            rows[i] = index.rankOf(keys.get(i)) + ". " + entry.name + " (" + Math.round(entry.rating) + ")";
+        }
+        return rows;
+    }
+
+    // Appender thread; one game's lines, flushed together
+    private void append(String lines) {
+        try {
+            if (writer == null) {
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            writer.write(lines);
+            writer.flush();
+        } catch (IOException e) {
+            Log.warn("RATINGS", "Failed to write {}: {}", file, e.getMessage());
+        }
+    }
+
+    // Same escaping as the chat history log: a name may hold tabs, newlines or backslashes
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch == '\\' && i + 1 < s.length()) {
+                char next = s.charAt(++i);
+                sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                sb.append(ch);
+            }
+        }
+        return sb.toString();
+    }
+}
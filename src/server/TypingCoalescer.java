@@ -0,0 +1,62 @@
+package server;
+
+import util.Log;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects TYPING notifications for one room and delivers them at most once per
+ * conversation per interval. Conversation 0 is the room chat; any other key is
+ * the id of a private-chat recipient, who learns which players are typing to them.
+ * A flush is only scheduled while something is pending, so idle rooms cost nothing.
+ */
+public class TypingCoalescer {
+    public static final long INTERVAL_MS = 1000;
+
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "typing-flush");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final GameManager room;
+    private Map<Integer, Set<Integer>> pending = new HashMap<>(); // conversation -> typing player ids
+    private boolean scheduled;
+    private long lastFlush;
+
+    public TypingCoalescer(GameManager room) {
+        this.room = room;
+    }
+
+    public synchronized void typing(int playerId, int conversation) {
+        pending.computeIfAbsent(conversation, k -> new LinkedHashSet<>()).add(playerId);
+        if (scheduled) return;
+        scheduled = true;
+        // The first update after a quiet spell goes out straight away
+        long delay = Math.max(0, lastFlush + INTERVAL_MS - System.currentTimeMillis());
+        FLUSHER.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        Map<Integer, Set<Integer>> batch;
+        synchronized (this) {
+            batch = pending;
+            pending = new HashMap<>();
+            scheduled = false;
+            lastFlush = System.currentTimeMillis();
+        }
+        for (Map.Entry<Integer, Set<Integer>> e : batch.entrySet()) {
+            int[] typers = new int[e.getValue().size()];
+            int i = 0;
+            for (int id : e.getValue()) typers[i++] = id;
+            try {
+                room.sendTyping(e.getKey(), typers);
+            } catch (Exception ex) {
+                Log.warn("CHAT", "Failed to deliver typing update: {}", ex.getMessage());
+            }
+        }
+    }
+}
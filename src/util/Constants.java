@@ -3,4 +3,9 @@ package util;
 public class Constants {
     public static final int SERVER_PORT = 5555;
     public static final String HOST = "localhost";
+    public static final int ADMIN_PORT = 5556; // Loopback-only metrics endpoint
+    public static final String RATINGS_FILE = "ratings.log";
+    public static final String CHAT_HISTORY_DIR = "chat-history";
+    public static final String REPLAY_DIR = "replays"; // One file per game, see model.Replay
+    public static final String BANNED_PHRASES_FILE = "banned-phrases.txt"; // Reloaded while running
 }
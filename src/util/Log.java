@@ -0,0 +1,204 @@
+package util;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous logger for the server hot path.
+ * Callers only claim a slot in a preallocated ring buffer and store the template
+ * and argument references; formatting and console I/O happen on a single
+ * background writer thread. When the buffer is full, records are dropped and
+ * counted rather than blocking the caller.
+ *
+ * Templates use "{}" placeholders. Configured with system properties:
+ * - ludo.log.level: DEBUG, INFO (default), WARN or ERROR
+ * - ludo.log.chat:  true to include chat message content (off by default)
+ */
+public final class Log {
+    public static final int DEBUG = 0;
+    public static final int INFO = 1;
+    public static final int WARN = 2;
+    public static final int ERROR = 3;
+    private static final String[] LEVEL_NAMES = {"DEBUG", "INFO ", "WARN ", "ERROR"};
+
+    private static final int CAPACITY = 8192; // Must be a power of two
+    private static final int MASK = CAPACITY - 1;
+    private static final String HIDDEN = "<hidden>";
+
+    private static final int level = parseLevel(System.getProperty("ludo.log.level", "INFO"));
+    private static final boolean chatContent = Boolean.getBoolean("ludo.log.chat");
+
+    private static final Slot[] slots = new Slot[CAPACITY];
+    private static final AtomicLong head = new AtomicLong(); // Next sequence to claim
+    private static final AtomicLong tail = new AtomicLong(); // Next sequence to write
+    private static final LongAdder dropped = new LongAdder();
+    private static volatile boolean writerIdle;
+    private static final Thread writer;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            slots[i] = new Slot();
+            slots[i].published = i - CAPACITY; // Nothing published yet
+        }
+        writer = new Thread(Log::drainLoop, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::drain, "log-flush"));
+    }
+
+    private Log() {}
+
+    public static boolean isEnabled(int lvl) {
+        return lvl >= level;
+    }
+
+    /** Chat text to log: the content itself only when chat content logging is enabled. */
+    public static String chat(String content) {
+        return chatContent ? content : HIDDEN;
+    }
+
+    public static long droppedCount() {
+        return dropped.sum();
+    }
+
+    public static void debug(String tag, String template) { log(DEBUG, tag, template, null, null, null); }
+    public static void debug(String tag, String template, Object a) { log(DEBUG, tag, template, a, null, null); }
+    public static void debug(String tag, String template, Object a, Object b) { log(DEBUG, tag, template, a, b, null); }
+
+    public static void info(String tag, String template) { log(INFO, tag, template, null, null, null); }
+    public static void info(String tag, String template, Object a) { log(INFO, tag, template, a, null, null); }
+    public static void info(String tag, String template, Object a, Object b) { log(INFO, tag, template, a, b, null); }
+    public static void info(String tag, String template, Object a, Object b, Object c) { log(INFO, tag, template, a, b, c); }
+
+    public static void warn(String tag, String template) { log(WARN, tag, template, null, null, null); }
+    public static void warn(String tag, String template, Object a) { log(WARN, tag, template, a, null, null); }
+    public static void warn(String tag, String template, Object a, Object b) { log(WARN, tag, template, a, b, null); }
+
+    public static void error(String tag, String template, Throwable t) { log(ERROR, tag, template, t, null, null); }
+    public static void error(String tag, String template, Object a, Throwable t) { log(ERROR, tag, template, a, t, null); }
+
+    private static void log(int lvl, String tag, String template, Object a, Object b, Object c) {
+        if (lvl < level) return;
+
+        long seq;
+        do {
+            seq = head.get();
+            if (seq - tail.get() >= CAPACITY) {
+                dropped.increment();
+                return;
+            }
+        } while (!head.compareAndSet(seq, seq + 1));
+
+        Slot slot = slots[(int) (seq & MASK)];
+        slot.level = lvl;
+        slot.time = System.currentTimeMillis();
+        slot.tag = tag;
+        slot.template = template;
+        slot.a = a;
+        slot.b = b;
+        slot.c = c;
+        slot.published = seq; // Volatile write publishes the fields above
+
+        if (writerIdle) LockSupport.unpark(writer);
+    }
+
+    private static void drainLoop() {
+        int idleRounds = 0;
+        while (true) {
+            if (drain()) {
+                idleRounds = 0;
+                continue;
+            }
+            if (++idleRounds < 100) {
+                Thread.onSpinWait();
+                continue;
+            }
+            writerIdle = true;
+            if (slots[(int) (tail.get() & MASK)].published != tail.get()) {
+                LockSupport.parkNanos(50_000_000L);
+            }
+            writerIdle = false;
+        }
+    }
+
+    private static final StringBuilder line = new StringBuilder(256);
+    private static final DateTimeFormatter TIME =
+            DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    private static long lastDropReport;
+
+    /** Writes every published record; returns true if anything was written. */
+    private static synchronized boolean drain() {
+        boolean wrote = false;
+        long next = tail.get();
+        while (true) {
+            Slot slot = slots[(int) (next & MASK)];
+            if (slot.published != next) break;
+            write(slot);
+            slot.tag = null;
+            slot.template = null;
+            slot.a = slot.b = slot.c = null;
+            tail.set(++next);
+            wrote = true;
+        }
+        long lost = dropped.sum();
+        if (lost != lastDropReport) {
+            System.err.println("[LOG] " + (lost - lastDropReport) + " record(s) dropped, buffer full");
+            lastDropReport = lost;
+        }
+        if (wrote) System.out.flush();
+        return wrote;
+    }
+
+    private static void write(Slot slot) {
+        line.setLength(0);
+        TIME.formatTo(Instant.ofEpochMilli(slot.time), line);
+        line.append(' ').append(LEVEL_NAMES[slot.level]).append(" [").append(slot.tag).append("] ");
+
+        String template = slot.template;
+        int argIndex = 0;
+        int from = 0;
+        while (argIndex < 3) {
+            int at = template.indexOf("{}", from);
+            if (at < 0) break;
+            line.append(template, from, at).append(arg(slot, argIndex++));
+            from = at + 2;
+        }
+        line.append(template, from, template.length());
+
+        Throwable thrown = null;
+        for (int i = 0; i < 3; i++) {
+            if (arg(slot, i) instanceof Throwable) thrown = (Throwable) arg(slot, i);
+        }
+
+        PrintStream stream = slot.level >= WARN ? System.err : System.out;
+        stream.println(line);
+        if (thrown != null) thrown.printStackTrace(stream);
+    }
+
+    private static Object arg(Slot slot, int i) {
+        return i == 0 ? slot.a : i == 1 ? slot.b : slot.c;
+    }
+
+    private static int parseLevel(String name) {
+        switch (name.trim().toUpperCase()) {
+            case "DEBUG": return DEBUG;
+            case "WARN": return WARN;
+            case "ERROR": return ERROR;
+            default: return INFO;
+        }
+    }
+
+    private static final class Slot {
+        volatile long published;
+        int level;
+        long time;
+        String tag;
+        String template;
+        Object a, b, c;
+    }
+}